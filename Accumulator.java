@@ -0,0 +1,12 @@
+// A statistic gathered in a single pass over records of type T. Accumulators filled from
+// disjoint parts of the input can be merged, so the parts may be processed in parallel.
+public interface Accumulator<T> {
+    // Count one record
+    void add(T record);
+
+    // Fold in an accumulator of the same kind and configuration, filled from other records
+    void merge(Accumulator<T> other);
+
+    // A new, empty accumulator of the same kind and configuration
+    Accumulator<T> emptyCopy();
+}
@@ -0,0 +1,171 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+// One-shot migration of a user's segment and goal files to the binary format (or back with
+// --to-text). File names are kept; FileStorageService picks the format from each file's header.
+public class BinaryFormatConverter {
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    public static void main(String[] args) {
+        boolean toText = args.length > 0 && args[0].equals("--to-text");
+        int nameIndex = toText ? 1 : 0;
+        if (args.length <= nameIndex) {
+            System.err.println("Usage: java BinaryFormatConverter [--to-text] <user name>");
+            System.exit(1);
+        }
+        File userDir = FileStorageService.userDirectory(args[nameIndex]);
+
+        try {
+            for (File segment : segmentFiles(new File(userDir, "records"))) {
+                convertRecords(segment, toText);
+                dropIndex(segment);
+            }
+            for (File segment : segmentFiles(new File(userDir, "mood_records"))) {
+                convertMoodRecords(segment, toText);
+                dropIndex(segment);
+            }
+            convertGoal(new File(userDir, "goals.txt"), toText);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Conversion failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void convertRecords(File file, boolean toText) throws IOException {
+        if (!needsConversion(file, toText)) {
+            return;
+        }
+
+        List<HealthRecord> records = new ArrayList<>();
+        if (toText) {
+            BinaryRecordFormat.readHealthRecords(file, records);
+        } else {
+            RecordFileLoader.loadHealthRecords(file, records);
+        }
+
+        long before = file.length();
+        File temp = tempFileFor(file);
+        if (toText) {
+            List<String> lines = new ArrayList<>();
+            for (HealthRecord record : records) {
+                lines.add(SegmentStore.entry(record.getId(), record.toFileString()));
+            }
+            writeLines(temp, lines);
+        } else {
+            BinaryRecordFormat.writeHealthRecords(temp, records);
+        }
+        replace(temp, file, records.size(), before);
+    }
+
+    private static void convertMoodRecords(File file, boolean toText) throws IOException {
+        if (!needsConversion(file, toText)) {
+            return;
+        }
+
+        List<MoodRecord> moodRecords = new ArrayList<>();
+        if (toText) {
+            BinaryRecordFormat.readMoodRecords(file, moodRecords);
+        } else {
+            RecordFileLoader.loadMoodRecords(file, moodRecords);
+        }
+
+        long before = file.length();
+        File temp = tempFileFor(file);
+        if (toText) {
+            List<String> lines = new ArrayList<>();
+            for (MoodRecord record : moodRecords) {
+                lines.add(SegmentStore.entry(record.getId(), record.toFileString()));
+            }
+            writeLines(temp, lines);
+        } else {
+            BinaryRecordFormat.writeMoodRecords(temp, moodRecords);
+        }
+        replace(temp, file, moodRecords.size(), before);
+    }
+
+    private static void convertGoal(File file, boolean toText) throws IOException {
+        if (!needsConversion(file, toText)) {
+            return;
+        }
+
+        List<Goal> goals = new ArrayList<>();
+        if (toText) {
+            goals = BinaryRecordFormat.readGoals(file);
+        } else {
+            for (String line : Files.readAllLines(file.toPath())) {
+                if (!line.trim().isEmpty()) {
+                    goals.add(Goal.fromFileString(line));
+                }
+            }
+        }
+        if (goals.isEmpty()) {
+            return;
+        }
+
+        long before = file.length();
+        File temp = tempFileFor(file);
+        if (toText) {
+            List<String> lines = new ArrayList<>();
+            for (Goal goal : goals) {
+                lines.add(goal.toFileString());
+            }
+            writeLines(temp, lines);
+        } else {
+            BinaryRecordFormat.writeGoals(temp, goals);
+        }
+        replace(temp, file, goals.size(), before);
+    }
+
+    // Segment base files in a store directory; their logs stay text and are folded in by compaction
+    private static List<File> segmentFiles(File directory) {
+        List<File> files = new ArrayList<>();
+        File[] entries = directory.listFiles();
+        if (entries != null) {
+            for (File entry : entries) {
+                if (entry.getName().endsWith(SEGMENT_SUFFIX)) {
+                    files.add(entry);
+                }
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+
+    // A converted segment's date index no longer matches it; compaction writes a new one for text segments
+    private static void dropIndex(File segment) throws IOException {
+        String name = segment.getName();
+        File index = new File(segment.getParentFile(), name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + ".idx");
+        Files.deleteIfExists(index.toPath());
+    }
+
+    // Skip missing files and files already in the requested format
+    private static boolean needsConversion(File file, boolean toText) throws IOException {
+        if (!file.exists()) {
+            return false;
+        }
+        boolean binary = BinaryRecordFormat.isBinary(file);
+        if (binary != toText) {
+            System.out.println(file + ": already in " + (toText ? "text" : "binary") + " format");
+            return false;
+        }
+        return true;
+    }
+
+    private static File tempFileFor(File file) {
+        return new File(file.getPath() + ".converting");
+    }
+
+    private static void writeLines(File file, List<String> lines) throws IOException {
+        Files.write(file.toPath(), lines);
+    }
+
+    // Swap the converted copy into place only once it is fully written and on disk, in one rename
+    private static void replace(File temp, File file, int count, long before) throws IOException {
+        SegmentStore.replaceAtomically(temp, file);
+        System.out.println(String.format("%s: converted %d entries (%d -> %d bytes)",
+                file, count, before, file.length()));
+    }
+}
@@ -0,0 +1,299 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact binary layout for record files, recognised by its header.
+//
+// Header:  magic "HTRB", version (byte), record type (byte), flags (byte), record count (int),
+//          string table: entry count (int), then each entry as length (int) + UTF-8 bytes
+// Records of version 2 and later start with the record id (long); version 1 files have no ids.
+// Health:  epochDay (int), weight, sleepHours (int), waterIntake,
+//          exercise count (short), exercise string ids (int each)
+//          weight and waterIntake are hundredths (int) when FLAG_FIXED_POINT is set, doubles otherwise
+// Mood:    epochDay (int), mood string id (int), energyLevel (byte), notes length (int) + UTF-8 bytes
+// Goal:    null flags (byte), targetWeight (double), targetSleepHours (int),
+//          targetWaterIntake (double), creation epochDay (int); one per goal in the history, oldest first
+public class BinaryRecordFormat {
+    private static final byte[] MAGIC = {'H', 'T', 'R', 'B'};
+    private static final byte VERSION = 2;
+    // First version whose records carry ids
+    private static final byte VERSION_WITH_IDS = 2;
+
+    private static final byte TYPE_HEALTH = 1;
+    private static final byte TYPE_MOOD = 2;
+    private static final byte TYPE_GOAL = 3;
+
+    // Every weight and water value is a whole number of hundredths
+    private static final int FLAG_FIXED_POINT = 1;
+
+    // Null flags for the optional goal targets
+    private static final int HAS_WEIGHT = 1;
+    private static final int HAS_SLEEP = 2;
+    private static final int HAS_WATER = 4;
+
+    // Check whether a file starts with the binary header
+    public static boolean isBinary(File file) throws IOException {
+        if (!file.exists() || file.length() < MAGIC.length) {
+            return false;
+        }
+
+        byte[] header = new byte[MAGIC.length];
+        try (InputStream in = new FileInputStream(file)) {
+            if (in.readNBytes(header, 0, header.length) < header.length) {
+                return false;
+            }
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Write health records, with exercise names collected into the string table
+    public static void writeHealthRecords(File file, List<HealthRecord> records) throws IOException {
+        StringTable strings = new StringTable();
+        for (HealthRecord record : records) {
+            for (String exercise : record.getExercises()) {
+                strings.idOf(exercise);
+            }
+        }
+
+        boolean fixedPoint = true;
+        for (HealthRecord record : records) {
+            fixedPoint &= isHundredths(record.getWeight()) && isHundredths(record.getWaterIntake());
+        }
+
+        int flags = fixedPoint ? FLAG_FIXED_POINT : 0;
+        try (DataOutputStream out = open(file, TYPE_HEALTH, flags, records.size(), strings)) {
+            for (HealthRecord record : records) {
+                out.writeLong(record.getId());
+                out.writeInt((int) record.getDate().toEpochDay());
+                writeDecimal(out, record.getWeight(), fixedPoint);
+                out.writeInt(record.getSleepHours());
+                writeDecimal(out, record.getWaterIntake(), fixedPoint);
+                out.writeShort(record.getExercises().size());
+                for (String exercise : record.getExercises()) {
+                    out.writeInt(strings.idOf(exercise));
+                }
+            }
+        }
+    }
+
+    // Append every health record in a binary file to the given list
+    public static void readHealthRecords(File file, List<HealthRecord> records) throws IOException {
+        ByteBuffer buffer = readAll(file);
+        int flags = readHeader(buffer, TYPE_HEALTH, file);
+        boolean fixedPoint = (flags & FLAG_FIXED_POINT) != 0;
+        boolean hasIds = buffer.get(MAGIC.length) >= VERSION_WITH_IDS;
+        int count = buffer.getInt();
+        String[] strings = readStringTable(buffer);
+
+        for (int i = 0; i < count; i++) {
+            long id = hasIds ? buffer.getLong() : 0;
+            LocalDate date = LocalDate.ofEpochDay(buffer.getInt());
+            double weight = readDecimal(buffer, fixedPoint);
+            int sleepHours = buffer.getInt();
+            double waterIntake = readDecimal(buffer, fixedPoint);
+            int exerciseCount = buffer.getShort();
+            List<String> exercises = new ArrayList<>(exerciseCount);
+            for (int j = 0; j < exerciseCount; j++) {
+                exercises.add(strings[buffer.getInt()]);
+            }
+            HealthRecord record = new HealthRecord(date, weight, sleepHours, waterIntake, exercises);
+            record.setId(id);
+            records.add(record);
+        }
+    }
+
+    // Write mood records, with mood labels collected into the string table
+    public static void writeMoodRecords(File file, List<MoodRecord> moodRecords) throws IOException {
+        StringTable strings = new StringTable();
+        for (MoodRecord record : moodRecords) {
+            strings.idOf(record.getMoodRating());
+        }
+
+        try (DataOutputStream out = open(file, TYPE_MOOD, 0, moodRecords.size(), strings)) {
+            for (MoodRecord record : moodRecords) {
+                out.writeLong(record.getId());
+                out.writeInt((int) record.getDate().toEpochDay());
+                out.writeInt(strings.idOf(record.getMoodRating()));
+                out.writeByte(record.getEnergyLevel());
+                writeString(out, record.getNotes());
+            }
+        }
+    }
+
+    // Append every mood record in a binary file to the given list
+    public static void readMoodRecords(File file, List<MoodRecord> moodRecords) throws IOException {
+        ByteBuffer buffer = readAll(file);
+        readHeader(buffer, TYPE_MOOD, file);
+        boolean hasIds = buffer.get(MAGIC.length) >= VERSION_WITH_IDS;
+        int count = buffer.getInt();
+        String[] strings = readStringTable(buffer);
+
+        for (int i = 0; i < count; i++) {
+            long id = hasIds ? buffer.getLong() : 0;
+            LocalDate date = LocalDate.ofEpochDay(buffer.getInt());
+            String moodRating = strings[buffer.getInt()];
+            int energyLevel = buffer.get();
+            String notes = readString(buffer);
+            MoodRecord record = new MoodRecord(date, moodRating, energyLevel, notes);
+            record.setId(id);
+            moodRecords.add(record);
+        }
+    }
+
+    // Write a goal history, oldest goal first
+    public static void writeGoals(File file, List<Goal> goals) throws IOException {
+        try (DataOutputStream out = open(file, TYPE_GOAL, 0, goals.size(), new StringTable())) {
+            for (Goal goal : goals) {
+                int flags = (goal.getTargetWeight() != null ? HAS_WEIGHT : 0)
+                        | (goal.getTargetSleepHours() != null ? HAS_SLEEP : 0)
+                        | (goal.getTargetWaterIntake() != null ? HAS_WATER : 0);
+                out.writeByte(flags);
+                out.writeDouble(goal.getTargetWeight() != null ? goal.getTargetWeight() : 0);
+                out.writeInt(goal.getTargetSleepHours() != null ? goal.getTargetSleepHours() : 0);
+                out.writeDouble(goal.getTargetWaterIntake() != null ? goal.getTargetWaterIntake() : 0);
+                out.writeInt((int) goal.getCreationDate().toEpochDay());
+            }
+        }
+    }
+
+    // Read the goals stored in a binary file, oldest first; files from before goal histories hold one
+    public static List<Goal> readGoals(File file) throws IOException {
+        ByteBuffer buffer = readAll(file);
+        readHeader(buffer, TYPE_GOAL, file);
+        int count = buffer.getInt();
+        readStringTable(buffer);
+
+        List<Goal> goals = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int flags = buffer.get();
+            double targetWeight = buffer.getDouble();
+            int targetSleepHours = buffer.getInt();
+            double targetWaterIntake = buffer.getDouble();
+            LocalDate creationDate = LocalDate.ofEpochDay(buffer.getInt());
+
+            goals.add(new Goal((flags & HAS_WEIGHT) != 0 ? targetWeight : null,
+                    (flags & HAS_SLEEP) != 0 ? targetSleepHours : null,
+                    (flags & HAS_WATER) != 0 ? targetWaterIntake : null,
+                    creationDate));
+        }
+        return goals;
+    }
+
+    // Open a file for writing and emit the header and string table
+    private static DataOutputStream open(File file, byte type, int flags, int count, StringTable strings) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(type);
+        out.writeByte(flags);
+        out.writeInt(count);
+        out.writeInt(strings.entries.size());
+        for (String entry : strings.entries) {
+            writeString(out, entry);
+        }
+        return out;
+    }
+
+    // Validate the header and return its flags; the record count follows
+    private static int readHeader(ByteBuffer buffer, byte expectedType, File file) throws IOException {
+        for (byte b : MAGIC) {
+            if (buffer.get() != b) {
+                throw new IOException("Not a binary record file: " + file);
+            }
+        }
+        byte version = buffer.get();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported binary format version " + version + " in " + file);
+        }
+        byte type = buffer.get();
+        if (type != expectedType) {
+            throw new IOException("Unexpected record type " + type + " in " + file);
+        }
+        return buffer.get();
+    }
+
+    // True if the value survives a round trip through whole hundredths
+    private static boolean isHundredths(double value) {
+        double scaled = Math.rint(value * 100);
+        return Math.abs(scaled) <= Integer.MAX_VALUE && scaled / 100 == value;
+    }
+
+    private static void writeDecimal(DataOutputStream out, double value, boolean fixedPoint) throws IOException {
+        if (fixedPoint) {
+            out.writeInt((int) Math.rint(value * 100));
+        } else {
+            out.writeDouble(value);
+        }
+    }
+
+    private static double readDecimal(ByteBuffer buffer, boolean fixedPoint) {
+        return fixedPoint ? buffer.getInt() / 100.0 : buffer.getDouble();
+    }
+
+    private static String[] readStringTable(ByteBuffer buffer) {
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(buffer);
+        }
+        return strings;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    // Read the whole file into a heap buffer; binary files are compact enough for this
+    private static ByteBuffer readAll(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the buffer is full
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    // Assigns each distinct string a dense id in first-seen order
+    private static class StringTable {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> entries = new ArrayList<>();
+
+        int idOf(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = entries.size();
+                ids.put(value, id);
+                entries.add(value);
+            }
+            return id;
+        }
+    }
+}
@@ -159,6 +159,11 @@ public class ConsoleUI {
         return index;
     }
     
+    // Ask which of the listed records to delete, using the numbers shown, and return its id
+    public long getRecordIdForDeletion(List<HealthRecord> records) {
+        return records.get(getRecordIndexForDeletion(records.size())).getId();
+    }
+    
     // Helper method to get double input
     private double getDoubleInput(String prompt) {
         double value = 0;
@@ -280,9 +285,17 @@ public class ConsoleUI {
         System.out.println("[4] Correlate Mood with Health");
         System.out.println("[5] Delete a Mood Record");
         System.out.println("[6] Return to Main Menu");
+        System.out.println("[7] Search Mood Notes");
         System.out.println(ANSI_RESET);
     }
     
+    // Get a search query for mood notes
+    public String getNoteSearchQuery() {
+        displayInfo("Search words and \"quoted phrases\", combined with AND / OR (e.g. stressed AND project):");
+        System.out.print(ANSI_CYAN + "Search: " + ANSI_RESET);
+        return scanner.nextLine().trim();
+    }
+    
     // Get mood record index for deletion
     public int getMoodRecordIndexForDeletion(int maxIndex) {
         displayInfo("Enter the mood record number to delete (1-" + maxIndex + "): ");
@@ -296,6 +309,11 @@ public class ConsoleUI {
         return index;
     }
     
+    // Ask which of the listed mood records to delete, using the numbers shown, and return its id
+    public long getMoodRecordIdForDeletion(List<MoodRecord> records) {
+        return records.get(getMoodRecordIndexForDeletion(records.size())).getId();
+    }
+    
     // Display nutrition tracking submenu
 
     
@@ -0,0 +1,58 @@
+import java.util.Arrays;
+
+// Correlation coefficients of paired samples
+public class Correlation {
+
+    // Pearson's r from one pass of running means and co-moments; NaN with fewer than two pairs or
+    // when either side is constant
+    public static double pearson(double[] x, double[] y) {
+        double meanX = 0;
+        double meanY = 0;
+        double varianceX = 0;
+        double varianceY = 0;
+        double covariance = 0;
+        for (int i = 0; i < x.length; i++) {
+            double deltaX = x[i] - meanX;
+            double deltaY = y[i] - meanY;
+            meanX += deltaX / (i + 1);
+            meanY += deltaY / (i + 1);
+            varianceX += deltaX * (x[i] - meanX);
+            varianceY += deltaY * (y[i] - meanY);
+            covariance += deltaX * (y[i] - meanY);
+        }
+        if (x.length < 2 || varianceX == 0 || varianceY == 0) {
+            return Double.NaN;
+        }
+        return covariance / Math.sqrt(varianceX * varianceY);
+    }
+
+    // Spearman's rho: Pearson's r of the ranks
+    public static double spearman(double[] x, double[] y) {
+        return pearson(ranks(x), ranks(y));
+    }
+
+    // Rank of each value from 1, tied values sharing the mean of their ranks
+    public static double[] ranks(double[] values) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        double[] ranks = new double[values.length];
+        int start = 0;
+        while (start < order.length) {
+            int end = start + 1;
+            while (end < order.length && values[order[end]] == values[order[start]]) {
+                end++;
+            }
+            // Ranks start + 1 to end, averaged
+            double rank = (start + 1 + end) / 2.0;
+            for (int i = start; i < end; i++) {
+                ranks[order[i]] = rank;
+            }
+            start = end;
+        }
+        return ranks;
+    }
+}
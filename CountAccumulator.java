@@ -0,0 +1,30 @@
+// Counts records
+public class CountAccumulator<T> implements Accumulator<T> {
+    private long count;
+
+    public void add(T record) {
+        count++;
+    }
+
+    public void merge(Accumulator<T> other) {
+        count += ((CountAccumulator<T>) other).count;
+    }
+
+    public CountAccumulator<T> emptyCopy() {
+        return new CountAccumulator<>();
+    }
+
+    // Take a previously counted record back out
+    public void remove(T record) {
+        count--;
+    }
+
+    // Replace the count with one taken elsewhere
+    public void set(long count) {
+        this.count = count;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
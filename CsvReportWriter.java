@@ -0,0 +1,117 @@
+import java.io.IOException;
+
+// Renders reports as CSV with one row per value or note:
+//
+//   report,section,label,value,unit,percent
+//
+// Notes have an empty label and their text as the value. Units are written without surrounding
+// spaces. Several reports can share one file; the report column tells their rows apart.
+public class CsvReportWriter extends ReportWriter {
+    private String report = "";
+    private String section = "";
+    private boolean headerWritten;
+
+    public CsvReportWriter(Appendable out) {
+        super(out);
+    }
+
+    @Override
+    public void beginReport(String title) throws IOException {
+        report = title;
+        section = "";
+        writeHeader();
+    }
+
+    @Override
+    public void beginSection(String title) throws IOException {
+        section = title;
+    }
+
+    @Override
+    public void endSection() throws IOException {
+        section = "";
+    }
+
+    @Override
+    public void value(String label, CharSequence text) throws IOException {
+        startRow(label);
+        appendField(text);
+        out.append(",,\n");
+    }
+
+    @Override
+    public void value(String label, long number, String unit) throws IOException {
+        startRow(label);
+        appendLong(out, number);
+        out.append(',');
+        appendField(unit.trim());
+        out.append(",\n");
+    }
+
+    @Override
+    public void value(String label, double number, int decimals, String unit) throws IOException {
+        startRow(label);
+        appendFixed(out, number, decimals);
+        out.append(',');
+        appendField(unit.trim());
+        out.append(",\n");
+    }
+
+    @Override
+    public void share(String label, double number, int decimals, String unit, double percent, String of)
+            throws IOException {
+        startRow(label);
+        appendFixed(out, number, decimals);
+        out.append(',');
+        appendField(unit.trim());
+        out.append(',');
+        appendFixed(out, percent, 1);
+        out.append('\n');
+    }
+
+    @Override
+    public void note(String text) throws IOException {
+        startRow("");
+        appendField(text);
+        out.append(",,\n");
+    }
+
+    private void writeHeader() throws IOException {
+        if (!headerWritten) {
+            out.append("report,section,label,value,unit,percent\n");
+            headerWritten = true;
+        }
+    }
+
+    private void startRow(String label) throws IOException {
+        writeHeader();
+        appendField(report);
+        out.append(',');
+        appendField(section);
+        out.append(',');
+        appendField(label);
+        out.append(',');
+    }
+
+    // Quote a field if it holds a comma, quote or line break, doubling any quotes
+    private void appendField(CharSequence text) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(text);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+}
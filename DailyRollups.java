@@ -0,0 +1,280 @@
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// One Rollup per day with records, kept up to date as records are added and removed. Range
+// queries go through a RangeIndex over the days, so any number of overlapping ranges cost a few
+// array reads each however long the history is. Records added on or after the last day extend
+// the index in place; after any other change it still answers ranges that end before the
+// changed day, short ranges past it merge their days directly, and only a long one rebuilds it.
+// Quantile sketches don't fit in prefix sums; they are merged from a cached sketch per whole
+// month in the range plus the day sketches of the partial months at its ends.
+public class DailyRollups {
+    // Ranges of fewer days than this are merged day by day rather than rebuilding the index
+    private static final int SHORT_RANGE_DAYS = 62;
+
+    private final TreeMap<LocalDate, Rollup> days = new TreeMap<>();
+    // Days whose min or max was removed; rebuilt from their records when next read
+    private final Set<LocalDate> stale = new HashSet<>();
+    private final DayLoader loader;
+    // Built on the first query
+    private RangeIndex index;
+    // Earliest day changed since the index was built, other than by extending it; null if none
+    private LocalDate dirtyFrom;
+    // Days each exercise was done, indexed by ExerciseDictionary id; null for exercises never done
+    private final List<DayBitmap> exerciseDays = new ArrayList<>();
+    // Day sketches of each month merged together; dropped when a day in the month changes
+    private final Map<YearMonth, Rollup> monthQuantiles = new HashMap<>();
+
+    public DailyRollups(Collection<HealthRecord> records, DayLoader loader) {
+        this.loader = loader;
+        // Long histories are rolled up by day across cores, then the exercise days read off the days
+        days.putAll(SummaryEngine.summarize(new ArrayList<>(records), record -> true, new DayAccumulator()).days);
+        for (Map.Entry<LocalDate, Rollup> day : days.entrySet()) {
+            IdFrequencyAccumulator<HealthRecord> exercises = day.getValue().getExercises();
+            for (int id = 0; id < exercises.getIdLimit(); id++) {
+                if (exercises.getCount(id) > 0) {
+                    exerciseDays(id).add(day.getKey());
+                }
+            }
+        }
+    }
+
+    // Count a new record
+    public void add(HealthRecord record) {
+        Rollup day = days.computeIfAbsent(record.getDate(), date -> new Rollup());
+        day.add(record);
+        for (int id : record.getExerciseIds()) {
+            exerciseDays(id).add(record.getDate());
+        }
+        monthQuantiles.remove(YearMonth.from(record.getDate()));
+        if (index != null && !index.extend(record.getDate(), day)) {
+            changed(record.getDate());
+        }
+    }
+
+    // Stop counting a record
+    public void remove(HealthRecord record) {
+        Rollup day = days.get(record.getDate());
+        if (day == null) {
+            return;
+        }
+        if (!day.remove(record)) {
+            stale.add(record.getDate());
+        } else {
+            for (int id : record.getExerciseIds()) {
+                if (day.getExercises().getCount(id) == 0) {
+                    exerciseDays(id).remove(record.getDate());
+                }
+            }
+            if (day.getCount() == 0) {
+                days.remove(record.getDate());
+            }
+        }
+        monthQuantiles.remove(YearMonth.from(record.getDate()));
+        changed(record.getDate());
+    }
+
+    // Rollup of every record dated within [from, to]
+    public Rollup between(LocalDate from, LocalDate to) throws IOException {
+        if (dirtyFrom != null && !to.isBefore(dirtyFrom)) {
+            if (ChronoUnit.DAYS.between(from, to) < SHORT_RANGE_DAYS) {
+                return merged(from, to);
+            }
+            index = null;
+        }
+        Rollup rollup = index().between(from, to);
+        if (rollup.getCount() > 0) {
+            mergeQuantiles(rollup, from, to);
+        }
+        return rollup;
+    }
+
+    // Rollup of each period of the given length that overlaps [from, to], keyed by the period's
+    // first day. Periods are clipped to [from, to] and to the days with records.
+    public SortedMap<LocalDate, Rollup> byPeriod(LocalDate from, LocalDate to, Granularity granularity)
+            throws IOException {
+        SortedMap<LocalDate, Rollup> periods = new TreeMap<>();
+        if (days.isEmpty()) {
+            return periods;
+        }
+        LocalDate first = from.isAfter(days.firstKey()) ? from : days.firstKey();
+        LocalDate last = to.isBefore(days.lastKey()) ? to : days.lastKey();
+        for (LocalDate start = granularity.periodStart(first); !start.isAfter(last);
+                start = granularity.nextPeriod(start)) {
+            LocalDate end = granularity.nextPeriod(start).minusDays(1);
+            periods.put(start, between(start.isBefore(first) ? first : start, end.isAfter(last) ? last : end));
+        }
+        return periods;
+    }
+
+    // Days within [from, to] on which every one of the exercises was done, in order
+    public List<LocalDate> exerciseDays(Collection<String> exercises, LocalDate from, LocalDate to)
+            throws IOException {
+        rebuildStale();
+        DayBitmap matching = null;
+        for (String exercise : exercises) {
+            int id = ExerciseDictionary.find(exercise);
+            if (id < 0 || id >= exerciseDays.size() || exerciseDays.get(id) == null) {
+                return new ArrayList<>();
+            }
+            matching = matching == null ? exerciseDays.get(id) : matching.and(exerciseDays.get(id));
+        }
+        return matching == null ? new ArrayList<>() : matching.days(from, to);
+    }
+
+    // Up to limit exercises done on the most days within [from, to], with their number of days
+    public Map<String, Integer> topExercises(LocalDate from, LocalDate to, int limit) throws IOException {
+        rebuildStale();
+        List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+        for (int id = 0; id < exerciseDays.size(); id++) {
+            DayBitmap bitmap = exerciseDays.get(id);
+            int dayCount = bitmap == null ? 0 : bitmap.count(from, to);
+            if (dayCount > 0) {
+                counts.add(new AbstractMap.SimpleEntry<>(ExerciseDictionary.nameOf(id), dayCount));
+            }
+        }
+        counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        Map<String, Integer> top = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : counts.subList(0, Math.min(limit, counts.size()))) {
+            top.put(entry.getKey(), entry.getValue());
+        }
+        return top;
+    }
+
+    // Merge the quantile sketches of the days within [from, to] into the rollup
+    private void mergeQuantiles(Rollup rollup, LocalDate from, LocalDate to) {
+        LocalDate first = from.isAfter(days.firstKey()) ? from : days.firstKey();
+        LocalDate last = to.isBefore(days.lastKey()) ? to : days.lastKey();
+        for (YearMonth month = YearMonth.from(first); !month.atDay(1).isAfter(last); month = month.plusMonths(1)) {
+            if (!month.atDay(1).isBefore(first) && !month.atEndOfMonth().isAfter(last)) {
+                rollup.mergeQuantiles(monthQuantiles(month));
+                continue;
+            }
+            LocalDate start = month.atDay(1).isBefore(first) ? first : month.atDay(1);
+            LocalDate end = month.atEndOfMonth().isAfter(last) ? last : month.atEndOfMonth();
+            for (Rollup day : days.subMap(start, true, end, true).values()) {
+                rollup.mergeQuantiles(day);
+            }
+        }
+    }
+
+    private Rollup monthQuantiles(YearMonth month) {
+        Rollup merged = monthQuantiles.get(month);
+        if (merged == null) {
+            merged = new Rollup();
+            for (Rollup day : days.subMap(month.atDay(1), true, month.atEndOfMonth(), true).values()) {
+                merged.mergeQuantiles(day);
+            }
+            monthQuantiles.put(month, merged);
+        }
+        return merged;
+    }
+
+    private DayBitmap exerciseDays(int id) {
+        while (exerciseDays.size() <= id) {
+            exerciseDays.add(null);
+        }
+        if (exerciseDays.get(id) == null) {
+            exerciseDays.set(id, new DayBitmap());
+        }
+        return exerciseDays.get(id);
+    }
+
+    // Rollup of the days within [from, to] merged one by one, quantiles included
+    private Rollup merged(LocalDate from, LocalDate to) throws IOException {
+        Rollup rollup = new Rollup();
+        if (from.isAfter(to)) {
+            return rollup;
+        }
+        for (LocalDate date : new ArrayList<>(stale)) {
+            if (!date.isBefore(from) && !date.isAfter(to)) {
+                rebuild(date);
+            }
+        }
+        for (Rollup day : days.subMap(from, true, to, true).values()) {
+            rollup.merge(day);
+        }
+        return rollup;
+    }
+
+    // The index stops being right from this day on
+    private void changed(LocalDate date) {
+        if (index != null && (dirtyFrom == null || date.isBefore(dirtyFrom))) {
+            dirtyFrom = date;
+        }
+    }
+
+    private RangeIndex index() throws IOException {
+        if (index == null) {
+            rebuildStale();
+            index = new RangeIndex(days);
+            dirtyFrom = null;
+        }
+        return index;
+    }
+
+    private void rebuildStale() throws IOException {
+        for (LocalDate date : new ArrayList<>(stale)) {
+            rebuild(date);
+        }
+    }
+
+    private void rebuild(LocalDate date) throws IOException {
+        Rollup rollup = new Rollup();
+        for (HealthRecord record : loader.load(date)) {
+            rollup.add(record);
+        }
+        if (rollup.getCount() == 0) {
+            days.remove(date);
+        } else {
+            days.put(date, rollup);
+        }
+        for (int id = 0; id < exerciseDays.size(); id++) {
+            if (exerciseDays.get(id) != null && rollup.getExercises().getCount(id) == 0) {
+                exerciseDays.get(id).remove(date);
+            }
+        }
+        monthQuantiles.remove(YearMonth.from(date));
+        stale.remove(date);
+    }
+
+    // A Rollup per day, for building the initial days with SummaryEngine
+    private static class DayAccumulator implements Accumulator<HealthRecord> {
+        private final TreeMap<LocalDate, Rollup> days = new TreeMap<>();
+
+        public void add(HealthRecord record) {
+            days.computeIfAbsent(record.getDate(), date -> new Rollup()).add(record);
+        }
+
+        public void merge(Accumulator<HealthRecord> other) {
+            for (Map.Entry<LocalDate, Rollup> day : ((DayAccumulator) other).days.entrySet()) {
+                Rollup mine = days.putIfAbsent(day.getKey(), day.getValue());
+                if (mine != null) {
+                    mine.merge(day.getValue());
+                }
+            }
+        }
+
+        public DayAccumulator emptyCopy() {
+            return new DayAccumulator();
+        }
+    }
+
+    // Supplies the current records of a single day
+    public interface DayLoader {
+        List<HealthRecord> load(LocalDate date) throws IOException;
+    }
+}
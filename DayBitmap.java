@@ -0,0 +1,127 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Set of days, one bit per epoch day. Days are grouped into 64-day words and only words with at
+// least one day set are stored, sorted by position, so a sparse history stays small and a long
+// dense one costs 8 bytes per 64 days. Counting and intersecting go a word at a time.
+public class DayBitmap {
+    // Word positions (epoch day / 64) in ascending order, and the bits of each
+    private int[] keys = new int[4];
+    private long[] words = new long[4];
+    private int size;
+
+    public void add(LocalDate date) {
+        long day = date.toEpochDay();
+        int key = (int) (day >> 6);
+        int slot = Arrays.binarySearch(keys, 0, size, key);
+        if (slot < 0) {
+            slot = -slot - 1;
+            insert(slot, key);
+        }
+        words[slot] |= 1L << (day & 63);
+    }
+
+    public void remove(LocalDate date) {
+        long day = date.toEpochDay();
+        int slot = Arrays.binarySearch(keys, 0, size, (int) (day >> 6));
+        if (slot < 0) {
+            return;
+        }
+        words[slot] &= ~(1L << (day & 63));
+        if (words[slot] == 0) {
+            System.arraycopy(keys, slot + 1, keys, slot, size - slot - 1);
+            System.arraycopy(words, slot + 1, words, slot, size - slot - 1);
+            size--;
+        }
+    }
+
+    public boolean contains(LocalDate date) {
+        long day = date.toEpochDay();
+        int slot = Arrays.binarySearch(keys, 0, size, (int) (day >> 6));
+        return slot >= 0 && (words[slot] & (1L << (day & 63))) != 0;
+    }
+
+    // Number of days set within [from, to]
+    public int count(LocalDate from, LocalDate to) {
+        int count = 0;
+        long first = from.toEpochDay();
+        long last = to.toEpochDay();
+        for (int slot = firstSlot(first); slot < size && keys[slot] <= last >> 6; slot++) {
+            count += Long.bitCount(words[slot] & mask(keys[slot], first, last));
+        }
+        return count;
+    }
+
+    // The days set within [from, to], in order
+    public List<LocalDate> days(LocalDate from, LocalDate to) {
+        List<LocalDate> days = new ArrayList<>();
+        long first = from.toEpochDay();
+        long last = to.toEpochDay();
+        for (int slot = firstSlot(first); slot < size && keys[slot] <= last >> 6; slot++) {
+            long word = words[slot] & mask(keys[slot], first, last);
+            while (word != 0) {
+                days.add(LocalDate.ofEpochDay(((long) keys[slot] << 6) + Long.numberOfTrailingZeros(word)));
+                word &= word - 1;
+            }
+        }
+        return days;
+    }
+
+    // The days set in both bitmaps
+    public DayBitmap and(DayBitmap other) {
+        DayBitmap result = new DayBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                long word = words[i] & other.words[j];
+                if (word != 0) {
+                    result.insert(result.size, keys[i]);
+                    result.words[result.size - 1] = word;
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Slot of the first word that can hold the given day or a later one
+    private int firstSlot(long day) {
+        // Clamped, since LocalDate.MIN and MAX are out of int range even in words
+        int key = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, day >> 6));
+        int slot = Arrays.binarySearch(keys, 0, size, key);
+        return slot < 0 ? -slot - 1 : slot;
+    }
+
+    // Bits of the word at the given position that fall within [first, last]
+    private static long mask(int key, long first, long last) {
+        long start = (long) key << 6;
+        long mask = -1L;
+        if (first > start) {
+            mask &= -1L << (first - start);
+        }
+        if (last < start + 63) {
+            mask &= -1L >>> (63 - (last - start));
+        }
+        return mask;
+    }
+
+    private void insert(int slot, int key) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            words = Arrays.copyOf(words, size * 2);
+        }
+        System.arraycopy(keys, slot, keys, slot + 1, size - slot);
+        System.arraycopy(words, slot, words, slot + 1, size - slot);
+        keys[slot] = key;
+        words[slot] = 0;
+        size++;
+    }
+}
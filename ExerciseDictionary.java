@@ -0,0 +1,52 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Process-wide dictionary of exercise names. Each distinct name gets a small int id the first time
+// it is seen, so per-exercise counts and day bitmaps can be arrays indexed by id rather than maps
+// keyed by string. Ids are never reused or removed.
+public class ExerciseDictionary {
+    private static final ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<>();
+    // Indexed by id; replaced, never modified in place, once published
+    private static volatile String[] names = new String[16];
+    private static int size;
+
+    private ExerciseDictionary() {
+    }
+
+    // Id of the name, assigning the next free one if it is new
+    public static int idOf(String name) {
+        Integer id = IDS.get(name);
+        return id != null ? id : assign(name);
+    }
+
+    // Id of the name, or -1 if it has never been seen
+    public static int find(String name) {
+        Integer id = IDS.get(name);
+        return id != null ? id : -1;
+    }
+
+    public static String nameOf(int id) {
+        return names[id];
+    }
+
+    // One more than the highest id assigned so far
+    public static int size() {
+        return size;
+    }
+
+    private static synchronized int assign(String name) {
+        Integer existing = IDS.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        String[] current = names;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = name;
+        names = current;
+        // Publish the name before the id so nameOf never sees an id it can't resolve
+        IDS.put(name, size);
+        return size++;
+    }
+}
@@ -1,114 +1,468 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
 
 public class FileStorageService {
     private static final String DATA_DIR = "data";
-    private static final String RECORDS_FILE = DATA_DIR + "/records.txt";
-    private static final String GOAL_FILE = DATA_DIR + "/goals.txt";
-    private static final String MOOD_RECORDS_FILE = DATA_DIR + "/mood_records.txt";
+    private static final String GOAL_FILE_NAME = "goals.txt";
+    private static final String NOTE_INDEX_FILE_NAME = "mood_notes.idx";
 
-    public FileStorageService() {
-        // Create data directory if it doesn't exist
-        File dataDir = new File(DATA_DIR);
-        if (!dataDir.exists()) {
-            dataDir.mkdir();
+    // Single-user files written before storage was partitioned by user and month
+    private static final String LEGACY_RECORDS_FILE = DATA_DIR + "/records.txt";
+    private static final String LEGACY_RECORDS_LOG_FILE = DATA_DIR + "/records.log";
+    private static final String LEGACY_GOAL_FILE = DATA_DIR + "/goals.txt";
+    private static final String LEGACY_MOOD_RECORDS_FILE = DATA_DIR + "/mood_records.txt";
+    private static final String LEGACY_MOOD_RECORDS_LOG_FILE = DATA_DIR + "/mood_records.log";
+    private static final String MIGRATED_SUFFIX = ".migrated";
+
+    // Interval of the background sweep that compacts any non-empty log
+    private static final long COMPACTION_INTERVAL_MINUTES = 5;
+    // Mutations arriving within this window are written together in one group commit; each
+    // waits for the commit, so this bounds how long a save takes
+    private static final long GROUP_COMMIT_WINDOW_MS = 50;
+
+    private static final SegmentStore.Codec<HealthRecord> HEALTH_RECORD_CODEC = new SegmentStore.Codec<>() {
+        public LocalDate dateOf(HealthRecord record) {
+            return record.getDate();
         }
-    }
-    
-    // Save health records to file
-    public void saveRecords(List<HealthRecord> records) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(RECORDS_FILE))) {
-            for (HealthRecord record : records) {
-                writer.write(record.toFileString());
-                writer.newLine();
-            }
+
+        public long idOf(HealthRecord record) {
+            return record.getId();
         }
-    }
-    
-    // Load health records from file
-    public List<HealthRecord> loadRecords() throws IOException {
-        List<HealthRecord> records = new ArrayList<>();
-        File file = new File(RECORDS_FILE);
         
-        if (!file.exists()) {
-            return records; // Return empty list if file doesn't exist yet
+        public void setId(HealthRecord record, long id) {
+            record.setId(id);
         }
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
-                    records.add(HealthRecord.fromFileString(line));
-                }
-            }
+        public String toLine(HealthRecord record) {
+            return record.toFileString();
+        }
+
+        public void readText(File file, long start, long end, List<HealthRecord> records,
+                             LongConsumer deletions) throws IOException {
+            RecordFileLoader.loadHealthRecords(file, start, end, records, deletions);
+        }
+
+        public void readBinary(File file, List<HealthRecord> records) throws IOException {
+            BinaryRecordFormat.readHealthRecords(file, records);
+        }
+
+        public void writeBinary(File file, List<HealthRecord> records) throws IOException {
+            BinaryRecordFormat.writeHealthRecords(file, records);
+        }
+    };
+
+    private static final SegmentStore.Codec<MoodRecord> MOOD_RECORD_CODEC = new SegmentStore.Codec<>() {
+        public LocalDate dateOf(MoodRecord record) {
+            return record.getDate();
+        }
+
+        public long idOf(MoodRecord record) {
+            return record.getId();
+        }
+        
+        public void setId(MoodRecord record, long id) {
+            record.setId(id);
         }
         
-        return records;
+        public String toLine(MoodRecord record) {
+            return record.toFileString();
+        }
+
+        public void readText(File file, long start, long end, List<MoodRecord> records,
+                             LongConsumer deletions) throws IOException {
+            RecordFileLoader.loadMoodRecords(file, start, end, records, deletions);
+        }
+
+        public void readBinary(File file, List<MoodRecord> records) throws IOException {
+            BinaryRecordFormat.readMoodRecords(file, records);
+        }
+
+        public void writeBinary(File file, List<MoodRecord> records) throws IOException {
+            BinaryRecordFormat.writeMoodRecords(file, records);
+        }
+    };
+
+    // Per-user layout: data/<user>/records/2025-04.seg, data/<user>/mood_records/2025-04.seg,
+    // data/<user>/goals.txt, data/<user>/mood_notes.idx
+    private final File goalFile;
+    private final File noteIndexFile;
+    private final SegmentStore<HealthRecord> recordStore;
+    private final SegmentStore<MoodRecord> moodRecordStore;
+
+    private final ScheduledExecutorService backgroundExecutor;
+
+    // Goals waiting for the next group commit; record mutations wait inside their stores
+    private final List<Goal> pendingGoals = new ArrayList<>();
+    private boolean commitScheduled;
+    // Completed once the mutations queued since the last commit are on disk
+    private CompletableFuture<Void> pendingBatch = new CompletableFuture<>();
+
+    // Guards the goal file; taken after (never while waiting for) the service lock
+    private final Object goalLock = new Object();
+
+    public FileStorageService(String userName) {
+        File userDir = userDirectory(userName);
+        boolean newUser = !userDir.exists();
+
+        this.goalFile = new File(userDir, GOAL_FILE_NAME);
+        this.noteIndexFile = new File(userDir, NOTE_INDEX_FILE_NAME);
+        this.recordStore = new SegmentStore<>(new File(userDir, "records"), HEALTH_RECORD_CODEC);
+        this.moodRecordStore = new SegmentStore<>(new File(userDir, "mood_records"), MOOD_RECORD_CODEC);
+
+        if (newUser) {
+            migrateLegacyFiles();
+        }
+
+        // Daemon thread so pending compaction never keeps the application alive
+        backgroundExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-background");
+            thread.setDaemon(true);
+            return thread;
+        });
+        backgroundExecutor.scheduleWithFixedDelay(this::compactAll,
+                COMPACTION_INTERVAL_MINUTES, COMPACTION_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    // Directory holding one user's data, named after the user
+    public static File userDirectory(String userName) {
+        return new File(DATA_DIR, userName.replaceAll("[^A-Za-z0-9._-]", "_"));
+    }
+
+    // Save health records to file. Like every mutation below, this returns once the group
+    // commit holding it has been forced to disk; if that commit fails, the mutation stays
+    // queued for the next one and the failure is thrown here.
+    public void saveRecords(List<HealthRecord> records) throws IOException {
+        mutate(() -> recordStore.saveAll(records));
+    }
+
+    // Append a single health record to its month's log without rewriting any segment.
+    // The record is given its id before this returns.
+    public void appendRecord(HealthRecord record) throws IOException {
+        mutate(() -> recordStore.append(record));
+    }
+    
+    // Replace a stored health record; the new version takes over the previous one's id
+    public void updateRecord(HealthRecord previous, HealthRecord record) throws IOException {
+        mutate(() -> recordStore.update(previous, record));
     }
     
-    // Save goal to file
+    // Delete a stored health record by logging a tombstone for its id
+    public void deleteRecord(HealthRecord record) throws IOException {
+        mutate(() -> recordStore.delete(record));
+    }
+
+    // Load health records from file
+    public List<HealthRecord> loadRecords() throws IOException {
+        flush();
+        return recordStore.loadAll();
+    }
+
+    // Load the health records dated within [from, to], reading only the overlapping months
+    public List<HealthRecord> loadRecords(LocalDate from, LocalDate to) throws IOException {
+        flush();
+        return recordStore.load(from, to);
+    }
+
+    // Stream the health records dated within [from, to] in date order, one month in memory at a time
+    public Stream<HealthRecord> streamRecords(LocalDate from, LocalDate to) throws IOException {
+        flush();
+        return recordStore.stream(from, to);
+    }
+
+    // Save goal to file, after the goals set before it so past targets are kept
     public void saveGoal(Goal goal) throws IOException {
         if (goal == null) {
             return; // Don't save if goal is null
         }
-        
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(GOAL_FILE))) {
-            writer.write(goal.toFileString());
-        }
+
+        mutate(() -> pendingGoals.add(goal));
     }
-    
-    // Load goal from file
+
+    // Load the most recently set goal from file, or null if none was set
     public Goal loadGoal() throws IOException {
-        File file = new File(GOAL_FILE);
-        
-        if (!file.exists()) {
-            return null; // Return null if file doesn't exist yet
-        }
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line = reader.readLine();
-            if (line != null && !line.trim().isEmpty()) {
-                return Goal.fromFileString(line);
-            }
+        return loadGoalHistory().getCurrent();
+    }
+
+    // Load every goal ever set from file
+    public GoalHistory loadGoalHistory() throws IOException {
+        flush();
+
+        synchronized (goalLock) {
+            return new GoalHistory(readGoals(goalFile));
         }
-        
-        return null;
     }
-    
+
     // Save mood records to file
     public void saveMoodRecords(List<MoodRecord> moodRecords) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(MOOD_RECORDS_FILE))) {
-            for (MoodRecord record : moodRecords) {
-                writer.write(record.toFileString());
-                writer.newLine();
-            }
-        }
+        mutate(() -> moodRecordStore.saveAll(moodRecords));
+    }
+
+    // Append a single mood record to its month's log without rewriting any segment.
+    // The record is given its id before this returns.
+    public void appendMoodRecord(MoodRecord record) throws IOException {
+        mutate(() -> moodRecordStore.append(record));
+    }
+    
+    // Replace a stored mood record; the new version takes over the previous one's id
+    public void updateMoodRecord(MoodRecord previous, MoodRecord record) throws IOException {
+        mutate(() -> moodRecordStore.update(previous, record));
     }
     
+    // Delete a stored mood record by logging a tombstone for its id
+    public void deleteMoodRecord(MoodRecord record) throws IOException {
+        mutate(() -> moodRecordStore.delete(record));
+    }
+
     // Load mood records from file
     public List<MoodRecord> loadMoodRecords() throws IOException {
-        List<MoodRecord> moodRecords = new ArrayList<>();
-        File file = new File(MOOD_RECORDS_FILE);
-        
+        flush();
+        return moodRecordStore.loadAll();
+    }
+
+    // Hand every stored mood record to the sink, reading one stored month at a time. A failed
+    // flush doesn't stop the load: mood records are only queued on their way into memory, and
+    // stay queued for the next commit.
+    public void loadMoodRecords(Consumer<MoodRecord> sink) throws IOException {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Error saving mood records: " + e.getMessage());
+        }
+        moodRecordStore.loadAll(sink);
+    }
+
+    // Load the mood records dated within [from, to], reading only the overlapping months
+    public List<MoodRecord> loadMoodRecords(LocalDate from, LocalDate to) throws IOException {
+        flush();
+        return moodRecordStore.load(from, to);
+    }
+
+    // Stream the mood records dated within [from, to] in date order, one month in memory at a time
+    public Stream<MoodRecord> streamMoodRecords(LocalDate from, LocalDate to) throws IOException {
+        flush();
+        return moodRecordStore.stream(from, to);
+    }
+
+    // Load the mood note index stored for exactly these mood records, or build it from their notes
+    // if it is missing, unreadable or was stored for other records
+    public NoteIndex loadNoteIndex(MoodColumns moodRecords) {
+        if (noteIndexFile.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(noteIndexFile)))) {
+                NoteIndex index = NoteIndex.read(in, NoteIndex.fingerprint(moodRecords));
+                if (index != null) {
+                    return index;
+                }
+            } catch (IOException e) {
+                System.err.println("Error loading note index, rebuilding it: " + e.getMessage());
+            }
+        }
+        return NoteIndex.of(moodRecords);
+    }
+
+    // Store the mood note index for these mood records if it changed since it was loaded or saved
+    public void saveNoteIndex(NoteIndex index, MoodColumns moodRecords) throws IOException {
+        if (!index.isDirty()) {
+            return;
+        }
+        File temp = new File(noteIndexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            index.write(out, NoteIndex.fingerprint(moodRecords));
+        }
+        SegmentStore.replaceAtomically(temp, noteIndexFile);
+    }
+
+    // Write out every pending mutation now, e.g. before the application exits
+    public synchronized void flush() throws IOException {
+        commit();
+    }
+
+    // Fold every log into its segment
+    public synchronized void compactAll() {
+        try {
+            commit();
+            recordStore.compact();
+            moodRecordStore.compact();
+        } catch (IOException e) {
+            System.err.println("Error compacting data files: " + e.getMessage());
+        }
+    }
+
+    // Queue a mutation for the next group commit and wait until that commit is on disk. The
+    // wait happens outside the lock so the commit, and other writers joining it, can run.
+    private void mutate(Mutation mutation) throws IOException {
+        CompletableFuture<Void> batch;
+        synchronized (this) {
+            mutation.run();
+            batch = scheduleCommit();
+        }
+        try {
+            batch.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // Start the group-commit window unless one is already open; returns the batch it will commit
+    private CompletableFuture<Void> scheduleCommit() {
+        if (!commitScheduled) {
+            commitScheduled = true;
+            backgroundExecutor.schedule(this::commitInBackground, GROUP_COMMIT_WINDOW_MS, TimeUnit.MILLISECONDS);
+        }
+        return pendingBatch;
+    }
+
+    private synchronized void commitInBackground() {
+        try {
+            commit();
+        } catch (IOException e) {
+            // Pending mutations are kept and retried with the next commit
+            System.err.println("Error saving data: " + e.getMessage());
+        }
+    }
+
+    // Write all pending mutations, one write and one fsync per file, then release their writers
+    private void commit() throws IOException {
+        commitScheduled = false;
+        CompletableFuture<Void> batch = pendingBatch;
+        pendingBatch = new CompletableFuture<>();
+
+        boolean needsCompaction;
+        try {
+            needsCompaction = recordStore.commit();
+            needsCompaction |= moodRecordStore.commit();
+            if (!pendingGoals.isEmpty()) {
+                writeGoals(pendingGoals);
+                pendingGoals.clear();
+            }
+        } catch (IOException e) {
+            batch.completeExceptionally(e);
+            throw e;
+        }
+        batch.complete(null);
+
+        if (needsCompaction) {
+            backgroundExecutor.execute(this::compactAll);
+        }
+    }
+
+    // Rewrite the goal file with the new goals after the stored ones, one goal per line in text
+    private void writeGoals(List<Goal> added) throws IOException {
+        synchronized (goalLock) {
+            List<Goal> goals = readGoals(goalFile);
+            goals.addAll(added);
+            File temp = new File(goalFile.getPath() + ".tmp");
+            if (BinaryRecordFormat.isBinary(goalFile)) {
+                BinaryRecordFormat.writeGoals(temp, goals);
+            } else {
+                try (BufferedWriter writer = new BufferedWriter(new FileWriter(temp))) {
+                    for (Goal goal : goals) {
+                        writer.write(goal.toFileString());
+                        writer.newLine();
+                    }
+                }
+            }
+            SegmentStore.replaceAtomically(temp, goalFile);
+        }
+    }
+
+    // Goals stored in a file, oldest first; files from before goal histories hold one
+    private static List<Goal> readGoals(File file) throws IOException {
         if (!file.exists()) {
-            return moodRecords; // Return empty list if file doesn't exist yet
+            return new ArrayList<>(); // No goals set yet
         }
-        
+        if (BinaryRecordFormat.isBinary(file)) {
+            return BinaryRecordFormat.readGoals(file);
+        }
+
+        List<Goal> goals = new ArrayList<>();
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 if (!line.trim().isEmpty()) {
-                    moodRecords.add(MoodRecord.fromFileString(line));
+                    goals.add(Goal.fromFileString(line));
                 }
             }
         }
-        
-        return moodRecords;
+        return goals;
+    }
+
+    // Move the old single-user data files into this user's segments, once
+    private void migrateLegacyFiles() {
+        try {
+            File legacyRecords = new File(LEGACY_RECORDS_FILE);
+            File legacyRecordsLog = new File(LEGACY_RECORDS_LOG_FILE);
+            if (legacyRecords.exists() || legacyRecordsLog.exists()) {
+                List<HealthRecord> records = new ArrayList<>();
+                if (BinaryRecordFormat.isBinary(legacyRecords)) {
+                    BinaryRecordFormat.readHealthRecords(legacyRecords, records);
+                } else {
+                    RecordFileLoader.loadHealthRecords(legacyRecords, records);
+                }
+                RecordFileLoader.loadHealthRecords(legacyRecordsLog, records);
+                recordStore.writeAll(records);
+                markMigrated(legacyRecords);
+                markMigrated(legacyRecordsLog);
+            }
+
+            File legacyMoodRecords = new File(LEGACY_MOOD_RECORDS_FILE);
+            File legacyMoodRecordsLog = new File(LEGACY_MOOD_RECORDS_LOG_FILE);
+            if (legacyMoodRecords.exists() || legacyMoodRecordsLog.exists()) {
+                List<MoodRecord> moodRecords = new ArrayList<>();
+                if (BinaryRecordFormat.isBinary(legacyMoodRecords)) {
+                    BinaryRecordFormat.readMoodRecords(legacyMoodRecords, moodRecords);
+                } else {
+                    RecordFileLoader.loadMoodRecords(legacyMoodRecords, moodRecords);
+                }
+                RecordFileLoader.loadMoodRecords(legacyMoodRecordsLog, moodRecords);
+                moodRecordStore.writeAll(moodRecords);
+                markMigrated(legacyMoodRecords);
+                markMigrated(legacyMoodRecordsLog);
+            }
+
+            File legacyGoal = new File(LEGACY_GOAL_FILE);
+            if (legacyGoal.exists()) {
+                Files.copy(legacyGoal.toPath(), goalFile.toPath());
+                markMigrated(legacyGoal);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error migrating existing data: " + e.getMessage());
+        }
+    }
+
+    // Keep a migrated file around under a new name so it is never imported twice
+    private static void markMigrated(File file) throws IOException {
+        if (file.exists() && !file.renameTo(new File(file.getPath() + MIGRATED_SUFFIX))) {
+            throw new IOException("Could not rename " + file);
+        }
+    }
+
+    // Queues one change for the next group commit
+    private interface Mutation {
+        void run() throws IOException;
     }
-}
\ No newline at end of file
+}
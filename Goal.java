@@ -14,6 +14,14 @@ public class Goal {
         this.targetWaterIntake = targetWaterIntake;
         this.creationDate = LocalDate.now();
     }
+    
+    // Constructor for goals restored from storage
+    public Goal(Double targetWeight, Integer targetSleepHours, Double targetWaterIntake, LocalDate creationDate) {
+        this.targetWeight = targetWeight;
+        this.targetSleepHours = targetSleepHours;
+        this.targetWaterIntake = targetWaterIntake;
+        this.creationDate = creationDate;
+    }
 
     // Getters and Setters
     public Double getTargetWeight() {
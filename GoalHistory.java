@@ -0,0 +1,79 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Every goal the user has set, each active from its creation date until the next one's. Kept as
+// a sorted array of start days, so the goal active on any date is a binary search away. A goal
+// set on the same day as an earlier one replaces it, and the first goal also covers the days
+// before it was set, since no earlier targets exist to judge them by.
+public class GoalHistory {
+    // Epoch day each goal took effect, ascending, and the goal at the same index
+    private long[] starts = new long[0];
+    private Goal[] goals = new Goal[0];
+
+    public GoalHistory() {
+    }
+
+    // Restore a history from goals in the order they were set
+    public GoalHistory(List<Goal> goals) {
+        for (Goal goal : goals) {
+            add(goal);
+        }
+    }
+
+    // Record a newly set goal, effective from its creation date
+    public void add(Goal goal) {
+        long start = goal.getCreationDate().toEpochDay();
+        int index = Arrays.binarySearch(starts, start);
+        if (index >= 0) {
+            goals[index] = goal;
+            return;
+        }
+        int insert = -index - 1;
+        long[] newStarts = new long[starts.length + 1];
+        Goal[] newGoals = new Goal[goals.length + 1];
+        System.arraycopy(starts, 0, newStarts, 0, insert);
+        System.arraycopy(goals, 0, newGoals, 0, insert);
+        newStarts[insert] = start;
+        newGoals[insert] = goal;
+        System.arraycopy(starts, insert, newStarts, insert + 1, starts.length - insert);
+        System.arraycopy(goals, insert, newGoals, insert + 1, goals.length - insert);
+        starts = newStarts;
+        goals = newGoals;
+    }
+
+    // The goal active on a date, or null if no goal was ever set
+    public Goal activeOn(LocalDate date) {
+        return goals.length == 0 ? null : goals[indexOf(date.toEpochDay())];
+    }
+
+    // Index of the goal active on an epoch day, for reading many days against getGoals(); -1 if
+    // there are no goals
+    public int indexOf(long epochDay) {
+        int index = Arrays.binarySearch(starts, epochDay);
+        if (index < 0) {
+            // The goal that started before the day, or the first goal if none did
+            index = Math.max(0, -index - 2);
+        }
+        return goals.length == 0 ? -1 : index;
+    }
+
+    // The most recently effective goal, or null if none was ever set
+    public Goal getCurrent() {
+        return goals.length == 0 ? null : goals[goals.length - 1];
+    }
+
+    // Every goal, oldest first
+    public List<Goal> getGoals() {
+        return new ArrayList<>(Arrays.asList(goals));
+    }
+
+    public int size() {
+        return goals.length;
+    }
+
+    public boolean isEmpty() {
+        return goals.length == 0;
+    }
+}
@@ -0,0 +1,277 @@
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Which days met the goal active on them over the whole history, with streaks and monthly
+// attainment. A day with records meets its goal if any of its records does; days without records
+// break a streak.
+//
+// Records are evaluated in bulk over primitive columns, against the targets of every goal in the
+// history unboxed once into arrays, and per-day counts are kept in arrays indexed by epoch day. Records added on or after the
+// latest day update the streaks in constant time; anything else marks them for a rescan of the
+// day arrays on the next read.
+public class GoalTimeline {
+    private final GoalHistory goals;
+    // Unboxed targets by GoalHistory index; a target that isn't set never fails
+    private final double[] maxWeights;
+    private final int[] minSleepHours;
+    private final double[] minWaterIntakes;
+
+    // Epoch day of slot 0, and records and records meeting the goal per day
+    private long firstDay;
+    private int[] tracked = new int[0];
+    private int[] met = new int[0];
+    // Slots in use; the latest day with records is at lastSlot
+    private int lastSlot = -1;
+
+    private boolean dirty;
+    private int currentStreak;
+    // Streak that ended the day before the latest day; lets the current one be extended in place
+    private int previousStreak;
+    private int longestStreak;
+
+    // The goals must not change afterwards; build a new timeline when a goal is set
+    public GoalTimeline(GoalHistory goals, Collection<HealthRecord> records) {
+        this.goals = goals;
+        List<Goal> targets = goals.getGoals();
+        maxWeights = new double[targets.size()];
+        minSleepHours = new int[targets.size()];
+        minWaterIntakes = new double[targets.size()];
+        for (int i = 0; i < targets.size(); i++) {
+            Goal goal = targets.get(i);
+            maxWeights[i] = goal.getTargetWeight() != null ? goal.getTargetWeight() : Double.POSITIVE_INFINITY;
+            minSleepHours[i] = goal.getTargetSleepHours() != null ? goal.getTargetSleepHours() : Integer.MIN_VALUE;
+            minWaterIntakes[i] = goal.getTargetWaterIntake() != null
+                    ? goal.getTargetWaterIntake() : Double.NEGATIVE_INFINITY;
+        }
+        addAll(records);
+    }
+
+    // Evaluate many records at once
+    public void addAll(Collection<HealthRecord> records) {
+        int n = records.size();
+        long[] days = new long[n];
+        int[] goalIndexes = new int[n];
+        double[] weights = new double[n];
+        int[] sleepHours = new int[n];
+        double[] waterIntakes = new double[n];
+        int i = 0;
+        for (HealthRecord record : records) {
+            days[i] = record.getDate().toEpochDay();
+            goalIndexes[i] = goals.indexOf(days[i]);
+            weights[i] = record.getWeight();
+            sleepHours[i] = record.getSleepHours();
+            waterIntakes[i] = record.getWaterIntake();
+            i++;
+        }
+
+        boolean[] meets = evaluate(goalIndexes, weights, sleepHours, waterIntakes);
+        for (i = 0; i < n; i++) {
+            int slot = slotFor(days[i]);
+            tracked[slot]++;
+            if (meets[i]) {
+                met[slot]++;
+            }
+        }
+        dirty = true;
+    }
+
+    // Count a new record
+    public void add(HealthRecord record) {
+        boolean empty = lastSlot < 0;
+        long latest = firstDay + lastSlot;
+        long day = record.getDate().toEpochDay();
+        int slot = slotFor(day);
+        tracked[slot]++;
+        if (meets(record)) {
+            met[slot]++;
+        }
+        if (dirty || (!empty && day < latest)) {
+            dirty = true;
+            return;
+        }
+        // On or after the latest day: extend the streaks in place
+        if (empty || day > latest) {
+            previousStreak = !empty && day == latest + 1 ? currentStreak : 0;
+        }
+        currentStreak = met[slot] > 0 ? previousStreak + 1 : 0;
+        longestStreak = Math.max(longestStreak, currentStreak);
+    }
+
+    // Stop counting a record
+    public void remove(HealthRecord record) {
+        long slot = record.getDate().toEpochDay() - firstDay;
+        if (slot < 0 || slot > lastSlot || tracked[(int) slot] == 0) {
+            return;
+        }
+        tracked[(int) slot]--;
+        if (meets(record)) {
+            met[(int) slot]--;
+        }
+        while (lastSlot >= 0 && tracked[lastSlot] == 0) {
+            lastSlot--;
+        }
+        dirty = true;
+    }
+
+    public boolean isMet(LocalDate date) {
+        long slot = date.toEpochDay() - firstDay;
+        return slot >= 0 && slot <= lastSlot && met[(int) slot] > 0;
+    }
+
+    // Days with records
+    public int getDaysTracked() {
+        return countDays(tracked, 0, lastSlot);
+    }
+
+    // Days with records that met their goal
+    public int getDaysMet() {
+        return countDays(met, 0, lastSlot);
+    }
+
+    // Days with records within [from, to]
+    public int getDaysTracked(LocalDate from, LocalDate to) {
+        return countDays(tracked, slotOf(from), slotOf(to));
+    }
+
+    // Days with records within [from, to] that met their goal
+    public int getDaysMet(LocalDate from, LocalDate to) {
+        return countDays(met, slotOf(from), slotOf(to));
+    }
+
+    // The goals the days are judged against
+    public GoalHistory getGoalHistory() {
+        return goals;
+    }
+
+    // Consecutive days meeting the goal up to and including the latest day with records
+    public int getCurrentStreak() {
+        rescanIfDirty();
+        return currentStreak;
+    }
+
+    public int getLongestStreak() {
+        rescanIfDirty();
+        return longestStreak;
+    }
+
+    // Latest day with records, or null if there are none
+    public LocalDate getLastDate() {
+        return lastSlot < 0 ? null : LocalDate.ofEpochDay(firstDay + lastSlot);
+    }
+
+    // Percentage of the days with records that met the goal, per month with records
+    public SortedMap<YearMonth, Double> getMonthlyAttainment() {
+        SortedMap<YearMonth, Double> attainment = new TreeMap<>();
+        int i = 0;
+        while (i <= lastSlot) {
+            YearMonth month = YearMonth.from(LocalDate.ofEpochDay(firstDay + i));
+            int end = (int) Math.min(lastSlot + 1, month.plusMonths(1).atDay(1).toEpochDay() - firstDay);
+            int days = 0;
+            int daysMet = 0;
+            for (; i < end; i++) {
+                if (tracked[i] > 0) {
+                    days++;
+                    if (met[i] > 0) {
+                        daysMet++;
+                    }
+                }
+            }
+            if (days > 0) {
+                attainment.put(month, daysMet * 100.0 / days);
+            }
+        }
+        return attainment;
+    }
+
+    // Whether each record meets its goal, as one branch-free pass over the columns
+    private boolean[] evaluate(int[] goalIndexes, double[] weights, int[] sleepHours, double[] waterIntakes) {
+        boolean[] meets = new boolean[weights.length];
+        for (int i = 0; i < meets.length; i++) {
+            int goal = goalIndexes[i];
+            meets[i] = weights[i] <= maxWeights[goal] & sleepHours[i] >= minSleepHours[goal]
+                    & waterIntakes[i] >= minWaterIntakes[goal];
+        }
+        return meets;
+    }
+
+    // Same rule as Goal.isGoalMet, against the goal active on the record's date
+    private boolean meets(HealthRecord record) {
+        int goal = goals.indexOf(record.getDate().toEpochDay());
+        return record.getWeight() <= maxWeights[goal] && record.getSleepHours() >= minSleepHours[goal]
+                && record.getWaterIntake() >= minWaterIntakes[goal];
+    }
+
+    // Non-zero entries of a day array between two slots, clipped to the slots in use
+    private int countDays(int[] counts, long fromSlot, long toSlot) {
+        int end = (int) Math.min(toSlot, lastSlot);
+        int days = 0;
+        for (int i = (int) Math.max(fromSlot, 0); i <= end; i++) {
+            if (counts[i] > 0) {
+                days++;
+            }
+        }
+        return days;
+    }
+
+    private long slotOf(LocalDate date) {
+        return date.toEpochDay() - firstDay;
+    }
+
+    private void rescanIfDirty() {
+        if (!dirty) {
+            return;
+        }
+        int run = 0;
+        int before = 0;
+        longestStreak = 0;
+        for (int i = 0; i <= lastSlot; i++) {
+            if (i == lastSlot) {
+                before = run;
+            }
+            run = met[i] > 0 ? run + 1 : 0;
+            longestStreak = Math.max(longestStreak, run);
+        }
+        currentStreak = run;
+        previousStreak = before;
+        dirty = false;
+    }
+
+    // Slot for an epoch day, growing the arrays in either direction to cover it
+    private int slotFor(long day) {
+        if (lastSlot < 0) {
+            firstDay = day;
+            ensureCapacity(1);
+            lastSlot = 0;
+            return 0;
+        }
+        if (day < firstDay) {
+            int shift = (int) (firstDay - day);
+            int[] newTracked = new int[Math.max(tracked.length, lastSlot + 1) + shift + 16];
+            int[] newMet = new int[newTracked.length];
+            System.arraycopy(tracked, 0, newTracked, shift, lastSlot + 1);
+            System.arraycopy(met, 0, newMet, shift, lastSlot + 1);
+            tracked = newTracked;
+            met = newMet;
+            firstDay = day;
+            lastSlot += shift;
+            return 0;
+        }
+        int slot = (int) (day - firstDay);
+        ensureCapacity(slot + 1);
+        lastSlot = Math.max(lastSlot, slot);
+        return slot;
+    }
+
+    private void ensureCapacity(int length) {
+        if (length > tracked.length) {
+            int capacity = Math.max(length, tracked.length * 2);
+            tracked = Arrays.copyOf(tracked, capacity);
+            met = Arrays.copyOf(met, capacity);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+// Lengths of the periods a date range can be broken into for summaries
+public enum Granularity {
+    DAY("Daily"),
+    WEEK("Weekly"),
+    MONTH("Monthly"),
+    YEAR("Yearly");
+
+    private final String label;
+
+    Granularity(String label) {
+        this.label = label;
+    }
+
+    // Name used in summary headings, e.g. "Weekly"
+    public String getLabel() {
+        return label;
+    }
+
+    // First day of the period that contains the date; weeks start on Monday
+    public LocalDate periodStart(LocalDate date) {
+        switch (this) {
+            case WEEK:
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH:
+                return date.withDayOfMonth(1);
+            case YEAR:
+                return date.withDayOfYear(1);
+            default:
+                return date;
+        }
+    }
+
+    // First day of the period after the one that starts on the given date
+    public LocalDate nextPeriod(LocalDate start) {
+        switch (this) {
+            case WEEK:
+                return start.plusWeeks(1);
+            case MONTH:
+                return start.plusMonths(1);
+            case YEAR:
+                return start.plusYears(1);
+            default:
+                return start.plusDays(1);
+        }
+    }
+}
@@ -1,15 +1,16 @@
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 public class HealthRecord {
+    private long id; // Assigned by storage when first saved; 0 until then
     private LocalDate date;
     private double weight;
     private int sleepHours;
     private double waterIntake;
     private List<String> exercises;
+    // Exercises as ExerciseDictionary ids, in the same order
+    private int[] exerciseIds;
 
     // Constructor
     public HealthRecord(LocalDate date, double weight, int sleepHours, double waterIntake, List<String> exercises) {
@@ -17,10 +18,18 @@ public class HealthRecord {
         this.weight = weight;
         this.sleepHours = sleepHours;
         this.waterIntake = waterIntake;
-        this.exercises = exercises;
+        setExercises(exercises);
     }
 
     // Getters and Setters
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
     public LocalDate getDate() {
         return date;
     }
@@ -59,6 +68,14 @@ public class HealthRecord {
 
     public void setExercises(List<String> exercises) {
         this.exercises = exercises;
+        this.exerciseIds = new int[exercises.size()];
+        for (int i = 0; i < exerciseIds.length; i++) {
+            exerciseIds[i] = ExerciseDictionary.idOf(exercises.get(i));
+        }
+    }
+
+    public int[] getExerciseIds() {
+        return exerciseIds;
     }
 
     // Convert record to string for file storage
@@ -75,23 +92,7 @@ public class HealthRecord {
 
     // Create HealthRecord from file string
     public static HealthRecord fromFileString(String line) {
-        String[] parts = line.split(",");
-        if (parts.length < 4) {
-            throw new IllegalArgumentException("Invalid record format: " + line);
-        }
-        
-        LocalDate date = LocalDate.parse(parts[0]);
-        double weight = Double.parseDouble(parts[1]);
-        int sleepHours = Integer.parseInt(parts[2]);
-        double waterIntake = Double.parseDouble(parts[3]);
-        
-        // Handle exercises (may be empty or missing)
-        List<String> exercises = new ArrayList<>();
-        if (parts.length > 4 && parts[4].trim().length() > 0) {
-            exercises = Arrays.asList(parts[4].split("\\|"));
-        }
-        
-        return new HealthRecord(date, weight, sleepHours, waterIntake, exercises);
+        return RecordParser.parseHealthRecord(line);
     }
 
     @Override
@@ -1,5 +1,7 @@
+import java.time.LocalDate;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.stream.Stream;
 
 
 public class HealthTrackerApp {
@@ -8,23 +10,35 @@ public class HealthTrackerApp {
     private static SummaryService summaryService;
     private static ProgressTracker progressTracker;
     private static MoodTracker moodTracker;
-    
+    // Reports are only regenerated after the data they were built from changes
+    private static ReportCache reportCache;
+
     public static void main(String[] args) {
+        long startTime = System.nanoTime();
         try {
             // Initialize components
             ui = new ConsoleUI();
             userProfile = new UserProfile("User"); // Default name
+            // Flush pending saves even if the application is interrupted
+            Runtime.getRuntime().addShutdownHook(new Thread(userProfile::close));
             summaryService = new SummaryService();
             progressTracker = new ProgressTracker();
             moodTracker = new MoodTracker();
-            
+            reportCache = new ReportCache();
+
             boolean running = true;
-            
+            boolean firstMenu = true;
+
             // Main application loop
             while (running) {
                 ui.displayMainMenu();
+                if (firstMenu) {
+                    // Data files keep loading in the background; this is how long the user waited
+                    ui.displayInfo(String.format("Ready in %d ms", (System.nanoTime() - startTime) / 1_000_000));
+                    firstMenu = false;
+                }
                 int choice = ui.getUserChoice();
-                
+
                 try {
                     switch (choice) {
                 case 1: // Add new health record
@@ -81,31 +95,38 @@ public class HealthTrackerApp {
             }
         }
     }
-    
+
     // Add a new health record
     private static void addNewRecord() {
         HealthRecord record = ui.getNewHealthRecord();
-        userProfile.addRecord(record);
-        ui.displaySuccess("Health record added successfully!");
+        if (userProfile.addRecord(record)) {
+            ui.displaySuccess("Health record added successfully!");
+        } else {
+            ui.displayError("Health record added, but it could not be saved yet. It will be saved with the next change.");
+        }
     }
-    
+
     // View all health records
     private static void viewAllRecords() {
         ui.displayRecords(userProfile.getRecords());
     }
-    
+
     // View weekly summary
     private static void viewWeeklySummary() {
-        String summary = summaryService.generateWeeklySummary(userProfile.getRecords());
+        LocalDate today = LocalDate.now();
+        String summary = reportCache.get("weekly-summary", today.minusDays(7), today, userProfile.getDataVersion(),
+                () -> summaryService.generateWeeklySummary(userProfile));
         ui.displayMessage(summary);
     }
-    
+
     // View monthly summary
     private static void viewMonthlySummary() {
-        String summary = summaryService.generateMonthlySummary(userProfile.getRecords());
+        LocalDate today = LocalDate.now();
+        String summary = reportCache.get("monthly-summary", today.minusDays(30), today, userProfile.getDataVersion(),
+                () -> summaryService.generateMonthlySummary(userProfile));
         ui.displayMessage(summary);
     }
-    
+
     // Set or update health goals
     private static void setHealthGoals() {
         Goal currentGoal = userProfile.getGoal();
@@ -113,12 +134,12 @@ public class HealthTrackerApp {
             ui.displayInfo("Current goals:\n" + currentGoal.toString());
             ui.displayInfo("\nEnter new goals (or 0 to keep current):\n");
         }
-        
+
         Goal newGoal = ui.getGoalInput();
         userProfile.setGoal(newGoal);
         ui.displaySuccess("Health goals updated successfully!");
     }
-    
+
     // Track progress against goals
     private static void trackProgress() {
         Goal goal = userProfile.getGoal();
@@ -126,20 +147,26 @@ public class HealthTrackerApp {
             ui.displayError("No health goals set. Please set goals first.");
             return;
         }
-        
+
         List<HealthRecord> records = userProfile.getRecords();
         if (records.isEmpty()) {
             ui.displayError("No health records found. Please add records first.");
             return;
         }
-        
-        // Get the most recent record
+
+        // Get the most recent record, and the goal that applied on its date
         HealthRecord latestRecord = records.get(records.size() - 1);
-        
-        String progressReport = progressTracker.compareWithGoals(latestRecord, goal);
+        Goal activeGoal = userProfile.getGoalHistory().activeOn(latestRecord.getDate());
+
+        String progressReport = reportCache.get("progress", null, null, userProfile.getDataVersion(),
+                () -> progressTracker.compareWithGoals(latestRecord, activeGoal));
         ui.displayMessage(progressReport);
+
+        String historyReport = reportCache.get("goal-history", null, null, userProfile.getDataVersion(),
+                () -> progressTracker.compareHistoryWithGoals(userProfile.getGoalTimeline()));
+        ui.displayMessage(historyReport);
     }
-    
+
     // Delete a health record
     private static void deleteRecord() {
         List<HealthRecord> records = userProfile.getRecords();
@@ -147,52 +174,58 @@ public class HealthTrackerApp {
             ui.displayError("No health records found to delete.");
             return;
         }
-        
+
         ui.displayRecords(records);
-        int index = ui.getRecordIndexForDeletion(records.size());
-        
-        if (userProfile.deleteRecord(index)) {
+        long id = ui.getRecordIdForDeletion(records);
+
+        if (userProfile.deleteRecord(id)) {
             ui.displaySuccess("Record deleted successfully!");
         } else {
             ui.displayError("Failed to delete record.");
         }
     }
-    
+
     // Handle mood tracking functionality
     private static void handleMoodTracking() {
         boolean inMoodMenu = true;
-        
+
         while (inMoodMenu) {
             ui.displayMoodTrackingMenu();
             int choice = ui.getUserChoice();
-            
+
             switch (choice) {
                 case 1: // Add new mood record
                     MoodRecord moodRecord = ui.getNewMoodRecord();
-                    userProfile.addMoodRecord(moodRecord);
-                    ui.displaySuccess("Mood record added successfully!");
+                    if (userProfile.addMoodRecord(moodRecord)) {
+                        ui.displaySuccess("Mood record added successfully!");
+                    } else {
+                        ui.displayError("Mood record added, but it could not be saved yet. It will be saved with the next change.");
+                    }
                     break;
                 case 2: // View all mood records
                     ui.displayMoodRecords(userProfile.getMoodRecords());
                     break;
                 case 3: // Generate mood analysis
-                    List<MoodRecord> moodRecords = userProfile.getMoodRecords();
-                    if (moodRecords.isEmpty()) {
+                    MoodStats moodStats = userProfile.getMoodStats();
+                    if (moodStats.getCount() + moodStats.getInvalidCount() == 0) {
                         ui.displayError("No mood records found for analysis.");
                     } else {
-                        String analysis = moodTracker.generateMoodAnalysis(moodRecords);
+                        String analysis = reportCache.get("mood-analysis", null, null, userProfile.getDataVersion(),
+                                () -> moodTracker.generateMoodAnalysis(userProfile.getMoodStats()));
                         ui.displayMessage(analysis);
                     }
                     break;
                 case 4: // Correlate mood with health
-                    List<MoodRecord> mRecords = userProfile.getMoodRecords();
-                    List<HealthRecord> hRecords = userProfile.getRecords();
-                    if (mRecords.isEmpty() || hRecords.isEmpty()) {
-                        ui.displayError("Need both mood and health records for correlation.");
-                    } else {
-                        String correlation = moodTracker.correlateMoodWithHealth(mRecords, hRecords);
-                        ui.displayMessage(correlation);
-                    }
+                    // Merge both kinds of record from disk in date order rather than copying them;
+                    // the report notes when either kind is missing
+                    String correlation = reportCache.get("mood-correlation", null, null, userProfile.getDataVersion(),
+                            () -> {
+                                try (Stream<MoodRecord> moods = userProfile.streamMoodRecords();
+                                     Stream<HealthRecord> health = userProfile.streamRecords()) {
+                                    return moodTracker.correlateMoodWithHealth(moods, health);
+                                }
+                            });
+                    ui.displayMessage(correlation);
                     break;
                 case 5: // Delete a mood record
                     List<MoodRecord> records = userProfile.getMoodRecords();
@@ -200,8 +233,8 @@ public class HealthTrackerApp {
                         ui.displayError("No mood records found to delete.");
                     } else {
                         ui.displayMoodRecords(records);
-                        int index = ui.getMoodRecordIndexForDeletion(records.size());
-                        if (userProfile.deleteMoodRecord(index)) {
+                        long id = ui.getMoodRecordIdForDeletion(records);
+                        if (userProfile.deleteMoodRecord(id)) {
                             ui.displaySuccess("Mood record deleted successfully!");
                         } else {
                             ui.displayError("Failed to delete mood record.");
@@ -211,22 +244,37 @@ public class HealthTrackerApp {
                 case 6: // Return to main menu
                     inMoodMenu = false;
                     break;
+                case 7: // Search mood notes
+                    String query = ui.getNoteSearchQuery();
+                    List<MoodRecord> matches;
+                    try {
+                        matches = userProfile.searchMoodNotes(query);
+                    } catch (IllegalArgumentException e) {
+                        ui.displayError("Invalid search: " + e.getMessage() + ".");
+                        break;
+                    }
+                    if (matches.isEmpty()) {
+                        ui.displayInfo("No mood notes match \"" + query + "\".");
+                    } else {
+                        ui.displayMoodRecords(matches);
+                    }
+                    break;
                 default:
                     ui.displayError("Invalid choice. Please try again.");
             }
         }
     }
-    
 
-    
+
+
     // Handle medication reminder functionality
     private static void handleMedicationReminder() {
         boolean inMedicationMenu = true;
-        
+
         while (inMedicationMenu) {
             ui.displayMedicationReminderMenu();
             int choice = ui.getUserChoice();
-            
+
             switch (choice) {
                 case 1: // Add new medication reminder
                     ui.displayInfo("Feature coming soon!");
@@ -242,15 +290,15 @@ public class HealthTrackerApp {
             }
         }
     }
-    
+
     // Handle health metrics visualization functionality
     private static void handleVisualization() {
         boolean inVisualizationMenu = true;
-        
+
         while (inVisualizationMenu) {
             ui.displayVisualizationMenu();
             int choice = ui.getUserChoice();
-            
+
             switch (choice) {
                 case 1: // View weight trends
                     ui.displayInfo("Feature coming soon!");
@@ -266,15 +314,15 @@ public class HealthTrackerApp {
             }
         }
     }
-    
+
     // Handle social sharing functionality
     private static void handleSocialSharing() {
         boolean inSocialMenu = true;
-        
+
         while (inSocialMenu) {
             ui.displaySocialSharingMenu();
             int choice = ui.getUserChoice();
-            
+
             switch (choice) {
                 case 1: // Share health summary
                     ui.displayInfo("Feature coming soon!");
@@ -0,0 +1,65 @@
+import java.util.Arrays;
+import java.util.function.Function;
+
+// How often each small int id occurs, e.g. dictionary-encoded exercises. Counts live in an array
+// indexed by id, so counting and merging never hash.
+public class IdFrequencyAccumulator<T> implements Accumulator<T> {
+    private static final long[] EMPTY = new long[0];
+
+    private final Function<T, int[]> ids;
+
+    private long[] counts = EMPTY;
+
+    public IdFrequencyAccumulator(Function<T, int[]> ids) {
+        this.ids = ids;
+    }
+
+    public void add(T record) {
+        for (int id : ids.apply(record)) {
+            ensureCapacity(id + 1);
+            counts[id]++;
+        }
+    }
+
+    public void merge(Accumulator<T> other) {
+        long[] theirs = ((IdFrequencyAccumulator<T>) other).counts;
+        ensureCapacity(theirs.length);
+        for (int id = 0; id < theirs.length; id++) {
+            counts[id] += theirs[id];
+        }
+    }
+
+    public IdFrequencyAccumulator<T> emptyCopy() {
+        return new IdFrequencyAccumulator<>(ids);
+    }
+
+    // Take a previously added record back out
+    public void remove(T record) {
+        for (int id : ids.apply(record)) {
+            if (id < counts.length && counts[id] > 0) {
+                counts[id]--;
+            }
+        }
+    }
+
+    // Replace the count of one id with one taken elsewhere
+    public void set(int id, long count) {
+        ensureCapacity(id + 1);
+        counts[id] = count;
+    }
+
+    public long getCount(int id) {
+        return id < counts.length ? counts[id] : 0;
+    }
+
+    // Ids from here on have a count of zero
+    public int getIdLimit() {
+        return counts.length;
+    }
+
+    private void ensureCapacity(int length) {
+        if (length > counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(length, counts.length * 2));
+        }
+    }
+}
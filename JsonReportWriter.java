@@ -0,0 +1,173 @@
+import java.io.IOException;
+
+// Renders reports as a JSON array with one object per report:
+//
+//   [{"title": "...", "items": [
+//       {"label": "...", "value": 1.5, "unit": "kg"},
+//       {"label": "...", "value": 3, "unit": "times", "percent": 42.9},
+//       {"note": "..."},
+//       {"section": "...", "items": [...]}]}]
+//
+// Units are written without surrounding spaces; numbers that aren't finite become null.
+public class JsonReportWriter extends ReportWriter {
+    private boolean inReport;
+    private boolean inSection;
+    // Whether the current array already has an element, so the next one needs a comma
+    private boolean reportHasItems;
+    private boolean sectionHasItems;
+    private boolean anyReport;
+
+    public JsonReportWriter(Appendable out) {
+        super(out);
+    }
+
+    @Override
+    public void beginReport(String title) throws IOException {
+        endReport();
+        out.append(anyReport ? ",\n" : "[");
+        anyReport = true;
+        out.append("{\"title\": ");
+        appendString(title);
+        out.append(", \"items\": [");
+        inReport = true;
+        reportHasItems = false;
+    }
+
+    @Override
+    public void beginSection(String title) throws IOException {
+        startItem();
+        out.append("{\"section\": ");
+        appendString(title);
+        out.append(", \"items\": [");
+        inSection = true;
+        sectionHasItems = false;
+    }
+
+    @Override
+    public void endSection() throws IOException {
+        out.append("]}");
+        inSection = false;
+    }
+
+    @Override
+    public void value(String label, CharSequence text) throws IOException {
+        startValue(label);
+        appendString(text);
+        out.append('}');
+    }
+
+    @Override
+    public void value(String label, long number, String unit) throws IOException {
+        startValue(label);
+        appendLong(out, number);
+        appendUnit(unit);
+        out.append('}');
+    }
+
+    @Override
+    public void value(String label, double number, int decimals, String unit) throws IOException {
+        startValue(label);
+        appendNumber(number, decimals);
+        appendUnit(unit);
+        out.append('}');
+    }
+
+    @Override
+    public void share(String label, double number, int decimals, String unit, double percent, String of)
+            throws IOException {
+        startValue(label);
+        appendNumber(number, decimals);
+        appendUnit(unit);
+        out.append(", \"percent\": ");
+        appendNumber(percent, 1);
+        out.append('}');
+    }
+
+    @Override
+    public void note(String text) throws IOException {
+        startItem();
+        out.append("{\"note\": ");
+        appendString(text);
+        out.append('}');
+    }
+
+    @Override
+    public void finish() throws IOException {
+        endReport();
+        out.append(anyReport ? "]\n" : "[]\n");
+    }
+
+    private void endReport() throws IOException {
+        if (inSection) {
+            endSection();
+        }
+        if (inReport) {
+            out.append("]}");
+            inReport = false;
+        }
+    }
+
+    // Notes written outside any report get one of their own, with no title
+    private void startItem() throws IOException {
+        if (!inReport) {
+            out.append(anyReport ? ",\n" : "[");
+            anyReport = true;
+            out.append("{\"title\": null, \"items\": [");
+            inReport = true;
+            reportHasItems = false;
+        }
+        if (inSection) {
+            if (sectionHasItems) {
+                out.append(", ");
+            }
+            sectionHasItems = true;
+        } else {
+            if (reportHasItems) {
+                out.append(",\n  ");
+            } else {
+                out.append("\n  ");
+            }
+            reportHasItems = true;
+        }
+    }
+
+    private void startValue(String label) throws IOException {
+        startItem();
+        out.append("{\"label\": ");
+        appendString(label);
+        out.append(", \"value\": ");
+    }
+
+    private void appendUnit(String unit) throws IOException {
+        String trimmed = unit.trim();
+        if (!trimmed.isEmpty()) {
+            out.append(", \"unit\": ");
+            appendString(trimmed);
+        }
+    }
+
+    private void appendNumber(double number, int decimals) throws IOException {
+        if (Double.isNaN(number) || Double.isInfinite(number)) {
+            out.append("null");
+        } else {
+            appendFixed(out, number, decimals);
+        }
+    }
+
+    private void appendString(CharSequence text) throws IOException {
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Pearson's r between a health metric and the energy level logged lag days later, for every lag
+// from 1 up to a maximum; the same-day coefficient is the one over the joined days. Both series
+// are laid out as dense arrays by epoch day, each day holding the mean of its records or NaN
+// without any, and the sums behind every lag's coefficient are gathered in one sweep over the
+// days. That costs days * lags operations, a few hundred thousand for years of data with lags of
+// several weeks.
+public class LaggedCorrelation {
+    private static final double CONSTANT_TOLERANCE = 1e-12;
+
+    private final double[] coefficients;
+    private final int[] pairs;
+
+    private LaggedCorrelation(double[] coefficients, int[] pairs) {
+        this.coefficients = coefficients;
+        this.pairs = pairs;
+    }
+
+    // The energy series of the join as of() takes it; the same for every metric, so build it once
+    public static double[] energy(MoodHealthJoin joined) {
+        return centeredByDay(joined.getDays(), joined.getDayEnergy());
+    }
+
+    // Correlate the metric on each day with the energy level 1 to maxLag days later, from the
+    // per-day means of every day in the join
+    public static LaggedCorrelation of(MoodHealthJoin joined, double[] energy, Rollup.Metric metric, int maxLag) {
+        double[] values = centeredByDay(joined.getDays(), joined.getDayMetric(metric));
+        return sweep(values, energy, maxLag);
+    }
+
+    // Coefficient for one lag from 1 on; NaN with fewer than two pairs of days or a side that
+    // doesn't vary
+    public double getCoefficient(int lag) {
+        return coefficients[lag];
+    }
+
+    // Number of day pairs, metric on one day and energy lag days later, behind a lag's coefficient
+    public int getPairs(int lag) {
+        return pairs[lag];
+    }
+
+    public int getMaxLag() {
+        return coefficients.length - 1;
+    }
+
+    // Up to limit lags with at least minPairs pairs, strongest (by absolute coefficient) first
+    public List<Integer> strongestLags(int limit, int minPairs) {
+        List<Integer> lags = new ArrayList<>();
+        for (int lag = 1; lag < coefficients.length; lag++) {
+            if (pairs[lag] >= minPairs && !Double.isNaN(coefficients[lag])) {
+                lags.add(lag);
+            }
+        }
+        lags.sort((a, b) -> Double.compare(Math.abs(coefficients[b]), Math.abs(coefficients[a])));
+        return lags.subList(0, Math.min(limit, lags.size()));
+    }
+
+    // Lay out per-day means as a dense array from the first day to the last, less the mean over
+    // the days that have one, NaN for days without; centring keeps the sums small so the
+    // differences taken from them stay precise
+    private static double[] centeredByDay(long[] days, double[] means) {
+        if (days.length == 0) {
+            return new double[0];
+        }
+        double total = 0;
+        int present = 0;
+        for (double mean : means) {
+            if (!Double.isNaN(mean)) {
+                total += mean;
+                present++;
+            }
+        }
+        double mean = present == 0 ? 0 : total / present;
+        double[] dense = new double[(int) (days[days.length - 1] - days[0] + 1)];
+        Arrays.fill(dense, Double.NaN);
+        for (int i = 0; i < days.length; i++) {
+            dense[(int) (days[i] - days[0])] = means[i] - mean;
+        }
+        return dense;
+    }
+
+    // Count, sums, sums of squares and sum of products of the present pairs at every lag in one
+    // pass over the days, then Pearson's r from them
+    private static LaggedCorrelation sweep(double[] x, double[] y, int maxLag) {
+        int lags = maxLag + 1;
+        int[] n = new int[lags];
+        double[] sumX = new double[lags];
+        double[] sumY = new double[lags];
+        double[] sumXX = new double[lags];
+        double[] sumYY = new double[lags];
+        double[] sumXY = new double[lags];
+        for (int day = 0; day < y.length; day++) {
+            double energy = y[day];
+            if (Double.isNaN(energy)) {
+                continue;
+            }
+            for (int lag = 1, earlier = day - 1; lag < lags && earlier >= 0; lag++, earlier--) {
+                double value = x[earlier];
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                n[lag]++;
+                sumX[lag] += value;
+                sumY[lag] += energy;
+                sumXX[lag] += value * value;
+                sumYY[lag] += energy * energy;
+                sumXY[lag] += value * energy;
+            }
+        }
+
+        double[] coefficients = new double[lags];
+        coefficients[0] = Double.NaN;
+        for (int lag = 1; lag < lags; lag++) {
+            double covariance = n[lag] * sumXY[lag] - sumX[lag] * sumY[lag];
+            double varianceX = n[lag] * sumXX[lag] - sumX[lag] * sumX[lag];
+            double varianceY = n[lag] * sumYY[lag] - sumY[lag] * sumY[lag];
+            // A constant side leaves only rounding error behind, relative to its sum of squares
+            boolean constant = varianceX <= n[lag] * sumXX[lag] * CONSTANT_TOLERANCE
+                    || varianceY <= n[lag] * sumYY[lag] * CONSTANT_TOLERANCE;
+            coefficients[lag] = n[lag] < 2 || constant ? Double.NaN : covariance / Math.sqrt(varianceX * varianceY);
+        }
+        return new LaggedCorrelation(coefficients, n);
+    }
+}
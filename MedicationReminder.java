@@ -1,3 +1,4 @@
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
@@ -33,6 +34,11 @@ public class MedicationReminder {
     
     // Get today's medication schedule
     public String getTodaySchedule() {
+        return ReportWriter.toText(this::writeTodaySchedule);
+    }
+    
+    // Write today's medication schedule
+    public void writeTodaySchedule(ReportWriter out) throws IOException {
         LocalDate today = LocalDate.now();
         List<Medication> todayMeds = medications.stream()
                 .filter(med -> med.shouldTakeToday(today))
@@ -40,23 +46,18 @@ public class MedicationReminder {
                 .collect(Collectors.toList());
         
         if (todayMeds.isEmpty()) {
-            return "No medications scheduled for today.";
+            out.note("No medications scheduled for today.");
+            return;
         }
         
-        StringBuilder schedule = new StringBuilder();
-        schedule.append("Today's Medication Schedule:\n");
-        schedule.append("============================\n\n");
-        
+        out.beginReport("Today's Medication Schedule");
+        DateTimeFormatter timeFormat = DateTimeFormatter.ofPattern("hh:mm a");
+        StringBuilder dose = new StringBuilder();
         for (Medication med : todayMeds) {
-            schedule.append(med.getTime().format(DateTimeFormatter.ofPattern("hh:mm a")))
-                    .append(" - ")
-                    .append(med.getName())
-                    .append(" (")
-                    .append(med.getDosage())
-                    .append(")\n");
+            dose.setLength(0);
+            dose.append(med.getName()).append(" (").append(med.getDosage()).append(')');
+            out.value(med.getTime().format(timeFormat), dose);
         }
-        
-        return schedule.toString();
     }
     
     // Mark medication as taken
@@ -71,8 +72,14 @@ public class MedicationReminder {
     
     // Calculate adherence rate (percentage of medications taken as prescribed)
     public String calculateAdherence(int days) {
+        return ReportWriter.toText(out -> writeAdherence(days, out));
+    }
+    
+    // Write the adherence report for the past number of days
+    public void writeAdherence(int days, ReportWriter out) throws IOException {
         if (medications.isEmpty()) {
-            return "No medications found for adherence calculation.";
+            out.note("No medications found for adherence calculation.");
+            return;
         }
         
         LocalDate today = LocalDate.now();
@@ -93,33 +100,30 @@ public class MedicationReminder {
         }
         
         if (totalScheduled == 0) {
-            return "No medications were scheduled in the past " + days + " days.";
+            out.note("No medications were scheduled in the past " + days + " days.");
+            return;
         }
         
         double adherenceRate = (totalTaken * 100.0) / totalScheduled;
         
-        StringBuilder report = new StringBuilder();
-        report.append("Medication Adherence Report\n");
-        report.append("===========================\n\n");
-        report.append(String.format("Period: Last %d days\n", days));
-        report.append(String.format("Scheduled doses: %d\n", totalScheduled));
-        report.append(String.format("Taken doses: %d\n", totalTaken));
-        report.append(String.format("Adherence rate: %.1f%%\n\n", adherenceRate));
+        out.beginReport("Medication Adherence Report");
+        out.value("Period", "Last " + days + " days");
+        out.value("Scheduled doses", totalScheduled, "");
+        out.value("Taken doses", totalTaken, "");
+        out.value("Adherence rate", adherenceRate, 1, "%");
         
         // Provide feedback based on adherence rate
         if (adherenceRate >= 90) {
-            report.append("Excellent adherence! Keep up the good work.\n");
+            out.note("Excellent adherence! Keep up the good work.");
         } else if (adherenceRate >= 80) {
-            report.append("Good adherence. Try to be more consistent with your medication schedule.\n");
+            out.note("Good adherence. Try to be more consistent with your medication schedule.");
         } else if (adherenceRate >= 50) {
-            report.append("Moderate adherence. Missing doses can affect your treatment. " +
-                          "Consider setting reminders.\n");
+            out.note("Moderate adherence. Missing doses can affect your treatment. " +
+                     "Consider setting reminders.");
         } else {
-            report.append("Poor adherence. Please consult with your healthcare provider about " +
-                          "strategies to improve medication compliance.\n");
+            out.note("Poor adherence. Please consult with your healthcare provider about " +
+                     "strategies to improve medication compliance.");
         }
-        
-        return report.toString();
     }
     
     // Inner class to represent a medication
@@ -0,0 +1,54 @@
+import java.util.function.ToDoubleFunction;
+
+// Smallest and largest value of one numeric field
+public class MinMaxAccumulator<T> implements Accumulator<T> {
+    private final ToDoubleFunction<T> field;
+
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public MinMaxAccumulator(ToDoubleFunction<T> field) {
+        this.field = field;
+    }
+
+    public void add(T record) {
+        double value = field.applyAsDouble(record);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void merge(Accumulator<T> other) {
+        MinMaxAccumulator<T> that = (MinMaxAccumulator<T>) other;
+        min = Math.min(min, that.min);
+        max = Math.max(max, that.max);
+    }
+
+    public MinMaxAccumulator<T> emptyCopy() {
+        return new MinMaxAccumulator<>(field);
+    }
+
+    // Forget every value seen so far
+    public void clear() {
+        set(Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+    }
+
+    // Replace the extremes with ones found elsewhere
+    public void set(double min, double max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    // True if the record holds the current min or max, which removing it would invalidate
+    public boolean isExtreme(T record) {
+        double value = field.applyAsDouble(record);
+        return value == min || value == max;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+}
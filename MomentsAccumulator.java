@@ -0,0 +1,88 @@
+import java.util.function.ToDoubleFunction;
+
+// Sum, mean and variance of one numeric field. The squared deviations are updated with
+// Welford's method and merged with Chan's formula, so they stay accurate on long inputs.
+public class MomentsAccumulator<T> implements Accumulator<T> {
+    private final ToDoubleFunction<T> field;
+
+    private long count;
+    private double sum;
+    // Sum of squared deviations from the mean
+    private double m2;
+
+    public MomentsAccumulator(ToDoubleFunction<T> field) {
+        this.field = field;
+    }
+
+    public void add(T record) {
+        double value = field.applyAsDouble(record);
+        double oldMean = getMean();
+        count++;
+        sum += value;
+        m2 += (value - oldMean) * (value - getMean());
+    }
+
+    public void merge(Accumulator<T> other) {
+        MomentsAccumulator<T> that = (MomentsAccumulator<T>) other;
+        if (that.count == 0) {
+            return;
+        }
+        double delta = that.getMean() - getMean();
+        long total = count + that.count;
+        m2 += that.m2 + delta * delta * ((double) count * that.count / total);
+        count = total;
+        sum += that.sum;
+    }
+
+    public MomentsAccumulator<T> emptyCopy() {
+        return new MomentsAccumulator<>(field);
+    }
+
+    // Take a previously added record back out
+    public void remove(T record) {
+        if (count <= 1) {
+            count = 0;
+            sum = 0;
+            m2 = 0;
+            return;
+        }
+        double value = field.applyAsDouble(record);
+        double oldMean = getMean();
+        count--;
+        sum -= value;
+        m2 = Math.max(0, m2 - (value - oldMean) * (value - getMean()));
+    }
+
+    // Replace the totals with ones gathered elsewhere, e.g. from prefix sums
+    public void set(long count, double sum, double sumOfSquares) {
+        this.count = count;
+        this.sum = sum;
+        this.m2 = count > 0 ? Math.max(0, sumOfSquares - sum * sum / count) : 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    // Sum of the squared values; unlike the variance this adds up across disjoint sets
+    public double getSumOfSquares() {
+        return count > 0 ? m2 + sum * sum / count : 0;
+    }
+
+    public double getMean() {
+        return count > 0 ? sum / count : 0;
+    }
+
+    // Population variance
+    public double getVariance() {
+        return count > 0 ? m2 / count : 0;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+}
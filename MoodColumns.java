@@ -0,0 +1,193 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Mood records held as parallel primitive columns in the order they were loaded or added: id,
+// epoch day, MoodVocabulary id and energy level, with notes in a column of their own. A record
+// costs about 22 bytes plus its note, against 130 or more for a MoodRecord with its LocalDate,
+// map entry and boxed id. Records are rebuilt on demand. Rows are found by id through a column of
+// rows sorted by id, which new records with the highest id yet (as storage hands them out) extend
+// in place; anything else has it re-sorted on the next lookup.
+public class MoodColumns {
+    private long[] ids = new long[16];
+    private int[] epochDays = new int[16];
+    private byte[] moodIds = new byte[16];
+    // Saturated to the byte range; levels outside 1-10 are invalid either way
+    private byte[] energyLevels = new byte[16];
+    // Null for empty notes, so they share nothing per record
+    private String[] notes = new String[16];
+    // Labels of moods counted as MoodVocabulary.OTHER, null for the rest; null until there are any
+    private String[] otherMoods;
+    private int size;
+
+    // Rows in ascending id order, while rowsByIdSorted holds
+    private int[] rowsById = new int[16];
+    private boolean rowsByIdSorted = true;
+
+    public MoodColumns() {
+    }
+
+    // Add a record, or replace the one with the same id in place
+    public void put(MoodRecord record) {
+        int row = rowOf(record.getId());
+        if (row < 0) {
+            row = size;
+            if (row == ids.length) {
+                grow();
+            }
+            ids[row] = record.getId();
+            if (rowsByIdSorted && (row == 0 || record.getId() > ids[rowsById[row - 1]])) {
+                rowsById[row] = row;
+            } else {
+                rowsByIdSorted = false;
+            }
+            size++;
+        }
+        epochDays[row] = (int) record.getDate().toEpochDay();
+        moodIds[row] = record.getMoodId();
+        energyLevels[row] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, record.getEnergyLevel()));
+        notes[row] = record.getNotes() == null || record.getNotes().isEmpty() ? null : record.getNotes();
+        String mood = record.getMoodRating();
+        if (mood != null && !mood.equals(MoodVocabulary.labelOf(record.getMoodId()))) {
+            if (otherMoods == null) {
+                otherMoods = new String[ids.length];
+            }
+            otherMoods[row] = mood;
+        } else if (otherMoods != null) {
+            otherMoods[row] = null;
+        }
+    }
+
+    // The record with the given id, or null if there is none
+    public MoodRecord get(long id) {
+        int row = rowOf(id);
+        return row < 0 ? null : record(row);
+    }
+
+    // Remove the record with the given id, keeping the others in order; returns it, or null if
+    // there was none
+    public MoodRecord remove(long id) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return null;
+        }
+        MoodRecord removed = record(row);
+        int moved = size - row - 1;
+        System.arraycopy(ids, row + 1, ids, row, moved);
+        System.arraycopy(epochDays, row + 1, epochDays, row, moved);
+        System.arraycopy(moodIds, row + 1, moodIds, row, moved);
+        System.arraycopy(energyLevels, row + 1, energyLevels, row, moved);
+        System.arraycopy(notes, row + 1, notes, row, moved);
+        if (otherMoods != null) {
+            System.arraycopy(otherMoods, row + 1, otherMoods, row, moved);
+        }
+        size--;
+        notes[size] = null;
+        if (otherMoods != null) {
+            otherMoods[size] = null;
+        }
+        // Rows after the removed one have shifted
+        rowsByIdSorted = false;
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // The record in a row, rebuilt from the columns
+    public MoodRecord record(int row) {
+        String mood = otherMoods != null && otherMoods[row] != null ? otherMoods[row] : MoodVocabulary.labelOf(moodIds[row]);
+        MoodRecord record = new MoodRecord(LocalDate.ofEpochDay(epochDays[row]), mood, energyLevels[row], getNotes(row));
+        record.setId(ids[row]);
+        return record;
+    }
+
+    // Every record, in row order
+    public List<MoodRecord> toRecords() {
+        List<MoodRecord> records = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            records.add(record(row));
+        }
+        return records;
+    }
+
+    public long getId(int row) {
+        return ids[row];
+    }
+
+    public int getEpochDay(int row) {
+        return epochDays[row];
+    }
+
+    public byte getMoodId(int row) {
+        return moodIds[row];
+    }
+
+    public int getEnergyLevel(int row) {
+        return energyLevels[row];
+    }
+
+    // Notes of a row; empty if there are none
+    public String getNotes(int row) {
+        return notes[row] == null ? "" : notes[row];
+    }
+
+    // Rows in date order, same-day rows in row order
+    public int[] rowsByDate() {
+        long[] keys = new long[size];
+        for (int row = 0; row < size; row++) {
+            keys[row] = (long) epochDays[row] << 32 | row;
+        }
+        Arrays.sort(keys);
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = (int) keys[i];
+        }
+        return rows;
+    }
+
+    private int rowOf(long id) {
+        if (!rowsByIdSorted) {
+            sortRowsById();
+        }
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = ids[rowsById[mid]];
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return rowsById[mid];
+            }
+        }
+        return -1;
+    }
+
+    // Ids are unique, so each row's place is where its id falls among the sorted ids
+    private void sortRowsById() {
+        long[] sortedIds = Arrays.copyOf(ids, size);
+        Arrays.sort(sortedIds);
+        for (int row = 0; row < size; row++) {
+            rowsById[Arrays.binarySearch(sortedIds, ids[row])] = row;
+        }
+        rowsByIdSorted = true;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        moodIds = Arrays.copyOf(moodIds, capacity);
+        energyLevels = Arrays.copyOf(energyLevels, capacity);
+        notes = Arrays.copyOf(notes, capacity);
+        if (otherMoods != null) {
+            otherMoods = Arrays.copyOf(otherMoods, capacity);
+        }
+        rowsById = Arrays.copyOf(rowsById, capacity);
+    }
+}
@@ -0,0 +1,261 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Mood and health records joined on date by merging both sides in date order, one row per day
+// that has both. Several records on the same day are averaged into that day's row, so every
+// record counts the same however many were logged that day. The per-day means of every day with
+// either kind of record are kept too, for correlating one side with the other days later.
+public class MoodHealthJoin {
+    private static final Rollup.Metric[] METRICS = Rollup.Metric.values();
+
+    private final LocalDate[] dates;
+    // Mean energy level of each day's mood records
+    private final double[] energy;
+    // Mean of each metric over each day's health records, indexed by Metric ordinal then row
+    private final double[][] metrics;
+    private final int matchedMoodRecords;
+    private final int invalidEnergyLevels;
+
+    // Every day with a record of either kind, in order, as epoch days; the means below are NaN
+    // on days without that kind of record
+    private final long[] days;
+    private final double[] dayEnergy;
+    private final double[][] dayMetrics;
+    // Days with a mood record and days with a health record
+    private final int moodDays;
+    private final int healthDays;
+    // Null records, or records without a date, that were left out
+    private final int nullRecords;
+
+    private MoodHealthJoin(Builder builder) {
+        int rows = 0;
+        for (int day = 0; day < builder.size; day++) {
+            if (builder.moodCounts[day] > 0 && builder.healthCounts[day] > 0) {
+                rows++;
+            }
+        }
+        dates = new LocalDate[rows];
+        energy = new double[rows];
+        metrics = new double[METRICS.length][rows];
+        int row = 0;
+        for (int day = 0; day < builder.size; day++) {
+            if (builder.moodCounts[day] > 0 && builder.healthCounts[day] > 0) {
+                dates[row] = LocalDate.ofEpochDay(builder.days[day]);
+                energy[row] = builder.energy[day];
+                for (int i = 0; i < METRICS.length; i++) {
+                    metrics[i][row] = builder.metrics[i][day];
+                }
+                row++;
+            }
+        }
+        matchedMoodRecords = builder.matchedMoodRecords;
+        invalidEnergyLevels = builder.invalidEnergyLevels;
+
+        days = Arrays.copyOf(builder.days, builder.size);
+        dayEnergy = Arrays.copyOf(builder.energy, builder.size);
+        dayMetrics = new double[METRICS.length][];
+        for (int i = 0; i < METRICS.length; i++) {
+            dayMetrics[i] = Arrays.copyOf(builder.metrics[i], builder.size);
+        }
+        moodDays = builder.moodDays;
+        healthDays = builder.healthDays;
+        nullRecords = builder.nullRecords;
+    }
+
+    // Join records held in memory, sorting a copy of each side by date first
+    public static MoodHealthJoin of(Collection<MoodRecord> moodRecords, Collection<HealthRecord> healthRecords) {
+        List<MoodRecord> moods = new ArrayList<>(moodRecords);
+        moods.sort(Comparator.nullsFirst(Comparator.comparing(MoodRecord::getDate,
+                Comparator.nullsFirst(Comparator.naturalOrder()))));
+        List<HealthRecord> health = new ArrayList<>(healthRecords);
+        health.sort(Comparator.nullsFirst(Comparator.comparing(HealthRecord::getDate,
+                Comparator.nullsFirst(Comparator.naturalOrder()))));
+        return of(moods.stream(), health.stream());
+    }
+
+    // Join records streamed in date order, e.g. from UserProfile.streamMoodRecords() and
+    // streamRecords(), in one merge; only the per-day means are kept, never the records
+    public static MoodHealthJoin of(Stream<MoodRecord> moodRecords, Stream<HealthRecord> healthRecords) {
+        Builder builder = new Builder();
+        Iterator<MoodRecord> moods = moodRecords.iterator();
+        Iterator<HealthRecord> health = healthRecords.iterator();
+        MoodRecord mood = builder.nextMood(moods);
+        HealthRecord record = builder.nextHealth(health);
+        while (mood != null || record != null) {
+            LocalDate date = mood == null ? record.getDate()
+                    : record == null || mood.getDate().isBefore(record.getDate()) ? mood.getDate() : record.getDate();
+
+            // Same-day mood records
+            long energySum = 0;
+            int moodCount = 0;
+            int invalid = 0;
+            for (; mood != null && mood.getDate().equals(date); mood = builder.nextMood(moods)) {
+                int level = mood.getEnergyLevel();
+                if (level < 1 || level > 10) {
+                    invalid++;
+                }
+                energySum += level;
+                moodCount++;
+            }
+            // Same-day health records
+            double[] sums = new double[METRICS.length];
+            int healthCount = 0;
+            for (; record != null && record.getDate().equals(date); record = builder.nextHealth(health)) {
+                for (Rollup.Metric metric : METRICS) {
+                    sums[metric.ordinal()] += metric.valueOf(record);
+                }
+                healthCount++;
+            }
+            builder.addDay(date.toEpochDay(), moodCount, energySum, invalid, healthCount, sums);
+        }
+        return new MoodHealthJoin(builder);
+    }
+
+    // Number of days with both mood and health records
+    public int size() {
+        return dates.length;
+    }
+
+    public LocalDate getDate(int row) {
+        return dates[row];
+    }
+
+    // Mean energy level per day; shared, not copied
+    public double[] getEnergy() {
+        return energy;
+    }
+
+    // Mean of a metric per day; shared, not copied
+    public double[] getMetric(Rollup.Metric metric) {
+        return metrics[metric.ordinal()];
+    }
+
+    // Number of mood records on the joined days
+    public int getMatchedMoodRecords() {
+        return matchedMoodRecords;
+    }
+
+    // Number of mood records on the joined days with an energy level outside 1-10
+    public int getInvalidEnergyLevels() {
+        return invalidEnergyLevels;
+    }
+
+    // Epoch days with a mood or health record, in order; shared, not copied
+    public long[] getDays() {
+        return days;
+    }
+
+    // Mean energy level of each of getDays(), NaN without mood records; shared, not copied
+    public double[] getDayEnergy() {
+        return dayEnergy;
+    }
+
+    // Mean of a metric on each of getDays(), NaN without health records; shared, not copied
+    public double[] getDayMetric(Rollup.Metric metric) {
+        return dayMetrics[metric.ordinal()];
+    }
+
+    // Number of days with a mood record
+    public int getMoodDays() {
+        return moodDays;
+    }
+
+    // Number of days with a health record
+    public int getHealthDays() {
+        return healthDays;
+    }
+
+    // Null records, or records without a date, that were left out of the join
+    public int getNullRecords() {
+        return nullRecords;
+    }
+
+    // Gathers the per-day means as the merge reaches each day
+    private static class Builder {
+        private long[] days = new long[64];
+        private int[] moodCounts = new int[64];
+        private int[] healthCounts = new int[64];
+        private double[] energy = new double[64];
+        private double[][] metrics = new double[METRICS.length][64];
+        private int size;
+        private int matchedMoodRecords;
+        private int invalidEnergyLevels;
+        private int moodDays;
+        private int healthDays;
+        private int nullRecords;
+        private LocalDate lastMoodDate;
+        private LocalDate lastHealthDate;
+
+        private void addDay(long day, int moodCount, long energySum, int invalid, int healthCount, double[] sums) {
+            if (size == days.length) {
+                int capacity = size * 2;
+                days = Arrays.copyOf(days, capacity);
+                moodCounts = Arrays.copyOf(moodCounts, capacity);
+                healthCounts = Arrays.copyOf(healthCounts, capacity);
+                energy = Arrays.copyOf(energy, capacity);
+                for (int i = 0; i < metrics.length; i++) {
+                    metrics[i] = Arrays.copyOf(metrics[i], capacity);
+                }
+            }
+            days[size] = day;
+            moodCounts[size] = moodCount;
+            healthCounts[size] = healthCount;
+            energy[size] = moodCount > 0 ? (double) energySum / moodCount : Double.NaN;
+            for (int i = 0; i < metrics.length; i++) {
+                metrics[i][size] = healthCount > 0 ? sums[i] / healthCount : Double.NaN;
+            }
+            if (moodCount > 0) {
+                moodDays++;
+            }
+            if (healthCount > 0) {
+                healthDays++;
+            }
+            if (moodCount > 0 && healthCount > 0) {
+                matchedMoodRecords += moodCount;
+                invalidEnergyLevels += invalid;
+            }
+            size++;
+        }
+
+        // Next mood record with a date, or null at the end; fails if the dates go backwards
+        private MoodRecord nextMood(Iterator<MoodRecord> records) {
+            while (records.hasNext()) {
+                MoodRecord record = records.next();
+                if (record == null || record.getDate() == null) {
+                    nullRecords++;
+                    continue;
+                }
+                lastMoodDate = checkOrder(lastMoodDate, record.getDate());
+                return record;
+            }
+            return null;
+        }
+
+        // Next health record with a date, or null at the end; fails if the dates go backwards
+        private HealthRecord nextHealth(Iterator<HealthRecord> records) {
+            while (records.hasNext()) {
+                HealthRecord record = records.next();
+                if (record == null || record.getDate() == null) {
+                    nullRecords++;
+                    continue;
+                }
+                lastHealthDate = checkOrder(lastHealthDate, record.getDate());
+                return record;
+            }
+            return null;
+        }
+
+        private static LocalDate checkOrder(LocalDate last, LocalDate date) {
+            if (last != null && date.isBefore(last)) {
+                throw new IllegalArgumentException("Records are not in date order");
+            }
+            return date;
+        }
+    }
+}
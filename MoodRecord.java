@@ -2,20 +2,30 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 
 public class MoodRecord {
+    private long id; // Assigned by storage when first saved; 0 until then
     private LocalDate date;
-    private String moodRating; // e.g., "Happy", "Sad", "Stressed", etc.
+    private String moodRating; // e.g., "Happy", "Sad", "Stressed", etc., normalised by MoodVocabulary
+    private byte moodId;
     private int energyLevel; // Scale of 1-10
     private String notes; // Additional notes about mood/feelings
     
     // Constructor
     public MoodRecord(LocalDate date, String moodRating, int energyLevel, String notes) {
         this.date = date;
-        this.moodRating = moodRating;
+        setMoodRating(moodRating);
         this.energyLevel = energyLevel;
         this.notes = notes;
     }
     
     // Getters and Setters
+    public long getId() {
+        return id;
+    }
+    
+    public void setId(long id) {
+        this.id = id;
+    }
+    
     public LocalDate getDate() {
         return date;
     }
@@ -29,7 +39,16 @@ public class MoodRecord {
     }
     
     public void setMoodRating(String moodRating) {
-        this.moodRating = moodRating;
+        this.moodId = MoodVocabulary.idOf(moodRating);
+        // A mood counted as OTHER for want of an id of its own still keeps its label
+        String label = MoodVocabulary.labelOf(moodId);
+        String normalized = MoodVocabulary.normalize(moodRating);
+        this.moodRating = normalized == null || normalized.equals(label) ? label : normalized;
+    }
+
+    // MoodVocabulary id of the mood; MoodVocabulary.NONE if there is none
+    public byte getMoodId() {
+        return moodId;
     }
     
     public int getEnergyLevel() {
@@ -58,17 +77,7 @@ public class MoodRecord {
     
     // Create MoodRecord from file string
     public static MoodRecord fromFileString(String line) {
-        String[] parts = line.split(",", 4); // Limit to 4 parts to handle commas in notes
-        if (parts.length < 4) {
-            throw new IllegalArgumentException("Invalid mood record format: " + line);
-        }
-        
-        LocalDate date = LocalDate.parse(parts[0]);
-        String moodRating = parts[1];
-        int energyLevel = Integer.parseInt(parts[2]);
-        String notes = parts[3].replace("[comma]", ","); // Unescape commas
-        
-        return new MoodRecord(date, moodRating, energyLevel, notes);
+        return RecordParser.parseMoodRecord(line);
     }
     
     @Override
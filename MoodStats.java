@@ -0,0 +1,254 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Running totals behind the mood analysis: how often each mood was logged, the energy sum, how
+// often each mood followed each other one from record to record in date order, how long each
+// stay in a mood lasted, and the first and last dates. Records added in date order update them in
+// constant time. A record added before the latest date, or any update or delete, marks them
+// stale, and they are rebuilt from the source on the next read.
+public class MoodStats {
+    // Current records; null if records are only fed in order
+    private final Supplier<MoodColumns> source;
+    private boolean stale;
+
+    private long count;
+    private long totalEnergy;
+    // Indexed by unsigned MoodVocabulary id
+    private final long[] moodCounts = new long[MoodVocabulary.CAPACITY];
+    private int moodChanges;
+    // Transitions from record to record in date order, including to the same mood: row-major
+    // matrix of side transitionSize, indexed by unsigned MoodVocabulary id
+    private long[] transitions = new long[16 * 16];
+    private int transitionSize = 16;
+    // Finished stays in each mood, from the first record of the stay to the first of the next
+    // mood, and their total length in days; indexed by unsigned MoodVocabulary id
+    private final long[] stays = new long[MoodVocabulary.CAPACITY];
+    private final long[] stayDays = new long[MoodVocabulary.CAPACITY];
+    // Epoch day the current stay began
+    private long stayStart;
+    private byte lastMood;
+    // Epoch days; firstDay > lastDay while nothing has been counted
+    private long firstDay;
+    private long lastDay;
+    // Records missing a date or mood or with an energy level outside 1-10; not counted
+    private long invalid;
+
+    // Totals of records fed to add in date order, e.g. from UserProfile.streamMoodRecords()
+    public MoodStats() {
+        this.source = null;
+        reset();
+    }
+
+    // Totals of the source's records, kept up to date by add and remove as they change
+    public MoodStats(Supplier<MoodColumns> source) {
+        this.source = source;
+        rebuild();
+    }
+
+    // Count a new record
+    public void add(MoodRecord record) {
+        if (stale) {
+            return;
+        }
+        if (record == null || record.getDate() == null) {
+            invalid++;
+            return;
+        }
+        long day = record.getDate().toEpochDay();
+        if (day < lastDay && source != null) {
+            stale = true;
+            return;
+        }
+        count(day, record.getMoodId(), record.getEnergyLevel());
+    }
+
+    // Stop counting a record that has left the source; mood changes around it can only be
+    // recounted from the source
+    public void remove(MoodRecord record) {
+        stale = true;
+    }
+
+    public long getCount() {
+        refresh();
+        return count;
+    }
+
+    public long getTotalEnergy() {
+        refresh();
+        return totalEnergy;
+    }
+
+    public double getAverageEnergy() {
+        refresh();
+        return count == 0 ? 0 : (double) totalEnergy / count;
+    }
+
+    // Number of records of each mood
+    public Map<String, Long> getMoodFrequency() {
+        refresh();
+        Map<String, Long> frequency = new HashMap<>();
+        for (int id = 0; id < MoodVocabulary.size(); id++) {
+            if (moodCounts[id] > 0) {
+                frequency.put(MoodVocabulary.labelOf((byte) id), moodCounts[id]);
+            }
+        }
+        return frequency;
+    }
+
+    // Number of records, in date order, whose mood differs from the one before
+    public int getMoodChanges() {
+        refresh();
+        return moodChanges;
+    }
+
+    // Number of times one record in date order was followed by the next with the given moods
+    public long getTransitions(String from, String to) {
+        refresh();
+        int fromId = MoodVocabulary.find(from);
+        int toId = MoodVocabulary.find(to);
+        if (fromId < 0 || toId < 0 || fromId >= transitionSize || toId >= transitionSize) {
+            return 0;
+        }
+        return transitions[fromId * transitionSize + toId];
+    }
+
+    // Share of the records after one with this mood that had each mood, including the same one;
+    // empty if no record has followed this mood yet
+    public Map<String, Double> getNextMoodProbabilities(String mood) {
+        refresh();
+        Map<String, Double> probabilities = new HashMap<>();
+        int from = MoodVocabulary.find(mood);
+        if (from < 0 || from >= transitionSize) {
+            return probabilities;
+        }
+        long total = 0;
+        for (int to = 0; to < transitionSize; to++) {
+            total += transitions[from * transitionSize + to];
+        }
+        for (int to = 0; to < transitionSize; to++) {
+            long times = transitions[from * transitionSize + to];
+            if (times > 0) {
+                probabilities.put(MoodVocabulary.labelOf((byte) to), (double) times / total);
+            }
+        }
+        return probabilities;
+    }
+
+    // Mean length in days of the finished stays in each mood that has any
+    public Map<String, Double> getAverageStayDays() {
+        refresh();
+        Map<String, Double> averages = new HashMap<>();
+        for (int id = 0; id < MoodVocabulary.size(); id++) {
+            if (stays[id] > 0) {
+                averages.put(MoodVocabulary.labelOf((byte) id), (double) stayDays[id] / stays[id]);
+            }
+        }
+        return averages;
+    }
+
+    // Mood of the latest record in date order, or null if there is none
+    public String getCurrentMood() {
+        refresh();
+        return MoodVocabulary.labelOf(lastMood);
+    }
+
+    // Date of the first record of the current unbroken stay in the latest mood
+    public LocalDate getCurrentMoodSince() {
+        refresh();
+        return count == 0 ? null : LocalDate.ofEpochDay(stayStart);
+    }
+
+    public LocalDate getFirstDate() {
+        refresh();
+        return count == 0 ? null : LocalDate.ofEpochDay(firstDay);
+    }
+
+    public LocalDate getLastDate() {
+        refresh();
+        return count == 0 ? null : LocalDate.ofEpochDay(lastDay);
+    }
+
+    // Number of records left out for missing a date or mood or having an energy level outside 1-10
+    public long getInvalidCount() {
+        refresh();
+        return invalid;
+    }
+
+    private void count(long day, byte mood, int energyLevel) {
+        if (mood == MoodVocabulary.NONE || energyLevel < 1 || energyLevel > 10) {
+            invalid++;
+            return;
+        }
+
+        count++;
+        totalEnergy += energyLevel;
+        moodCounts[mood & 0xFF]++;
+        if (lastMood == MoodVocabulary.NONE) {
+            stayStart = day;
+        } else {
+            int from = lastMood & 0xFF;
+            int to = mood & 0xFF;
+            if (Math.max(from, to) >= transitionSize) {
+                growTransitions(Math.max(from, to) + 1);
+            }
+            transitions[from * transitionSize + to]++;
+            if (from != to) {
+                moodChanges++;
+                stays[from]++;
+                stayDays[from] += day - stayStart;
+                stayStart = day;
+            }
+        }
+        lastMood = mood;
+        firstDay = Math.min(firstDay, day);
+        lastDay = Math.max(lastDay, day);
+    }
+
+    // Widen the transition matrix to hold at least size moods, keeping its counts
+    private void growTransitions(int size) {
+        int newSize = transitionSize;
+        while (newSize < size) {
+            newSize *= 2;
+        }
+        long[] widened = new long[newSize * newSize];
+        for (int from = 0; from < transitionSize; from++) {
+            System.arraycopy(transitions, from * transitionSize, widened, from * newSize, transitionSize);
+        }
+        transitions = widened;
+        transitionSize = newSize;
+    }
+
+    private void refresh() {
+        if (stale && source != null) {
+            rebuild();
+        }
+    }
+
+    private void reset() {
+        count = 0;
+        totalEnergy = 0;
+        Arrays.fill(moodCounts, 0);
+        moodChanges = 0;
+        Arrays.fill(transitions, 0);
+        Arrays.fill(stays, 0);
+        Arrays.fill(stayDays, 0);
+        stayStart = 0;
+        lastMood = MoodVocabulary.NONE;
+        firstDay = Long.MAX_VALUE;
+        lastDay = Long.MIN_VALUE;
+        invalid = 0;
+        stale = false;
+    }
+
+    // Recount every record of the source in date order, same-day records in the order they were added
+    private void rebuild() {
+        reset();
+        MoodColumns records = source.get();
+        for (int row : records.rowsByDate()) {
+            count(records.getEpochDay(row), records.getMoodId(row), records.getEnergyLevel(row));
+        }
+    }
+}
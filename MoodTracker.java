@@ -1,198 +1,330 @@
-import java.time.LocalDate;
+import java.io.IOException;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public class MoodTracker {
-    
+    // Longest delay, in days, between a health metric and the energy level it is checked against
+    private static final int MAX_LAG_DAYS = 28;
+    // Fewest pairs of days a lag needs before its coefficient is reported
+    private static final int MIN_LAG_PAIRS = 10;
+
     // Generate a mood analysis report based on mood records
     public String generateMoodAnalysis(List<MoodRecord> records) {
-        try {
-            // Validate input
-            if (records == null) {
-                return "Error: Mood records list is null.";
+        // Validate input
+        if (records == null) {
+            return "Error: Mood records list is null.";
+        }
+
+        // Sort records by date; nulls go first so they are reported as invalid records
+        return generateMoodAnalysis(records.stream()
+                .sorted(Comparator.nullsFirst(Comparator.comparing(MoodRecord::getDate,
+                        Comparator.nullsFirst(Comparator.naturalOrder())))));
+    }
+
+    // Generate a mood analysis report in a single pass over records in date order,
+    // e.g. UserProfile.streamMoodRecords(), without holding them in memory
+    public String generateMoodAnalysis(Stream<MoodRecord> records) {
+        return ReportWriter.toText(out -> writeMoodAnalysis(records, out));
+    }
+
+    // Generate a mood analysis report from running totals, e.g. UserProfile.getMoodStats(), without
+    // reading any records
+    public String generateMoodAnalysis(MoodStats stats) {
+        return ReportWriter.toText(out -> writeMoodAnalysis(stats, out));
+    }
+
+    // Write a mood analysis report from a single pass over records in date order
+    public void writeMoodAnalysis(Stream<MoodRecord> records, ReportWriter out) throws IOException {
+        MoodStats stats = new MoodStats();
+        try (records) {
+            Iterator<MoodRecord> iterator = records.iterator();
+            while (iterator.hasNext()) {
+                stats.add(iterator.next());
             }
-            if (records.isEmpty()) {
-                return "No mood records available for analysis.";
+        } catch (IllegalArgumentException e) {
+            out.note("Invalid data format in mood records: " + e.getMessage());
+            return;
+        } catch (RuntimeException e) {
+            out.note("Error during mood analysis: " + e.getMessage() +
+                     "\nPlease ensure all records are properly formatted and try again.");
+            return;
+        }
+        writeMoodAnalysis(stats, out);
+    }
+
+    // Write a mood analysis report from running totals
+    public void writeMoodAnalysis(MoodStats stats, ReportWriter out) throws IOException {
+        // Validate record integrity
+        if (stats.getInvalidCount() > 0) {
+            out.note("Error: Invalid mood records found. Please check for null values and valid energy levels (1-10).");
+            return;
+        }
+
+        long count = stats.getCount();
+        if (count == 0) {
+            out.note("No mood records available for analysis.");
+            return;
+        }
+
+        // Calculate average energy level
+        double avgEnergyLevel = stats.getAverageEnergy();
+
+        // Find most common mood
+        Map<String, Long> moodFrequency = stats.getMoodFrequency();
+        String mostCommonMood = moodFrequency.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse("None");
+
+        // Calculate days covered
+        long daysCovered = 0;
+        if (count > 1) {
+            daysCovered = ChronoUnit.DAYS.between(stats.getFirstDate(), stats.getLastDate()) + 1;
+        } else {
+            daysCovered = 1;
+        }
+
+        // Write the analysis report
+        out.beginReport("Mood Analysis Report");
+        out.value("Period", daysCovered, " days");
+        out.value("Number of records", count, "");
+
+        out.beginSection("Mood Distribution");
+        List<Map.Entry<String, Long>> byFrequency = new ArrayList<>(moodFrequency.entrySet());
+        byFrequency.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        for (Map.Entry<String, Long> entry : byFrequency) {
+            out.share(entry.getKey(), entry.getValue(), 0, " times", (entry.getValue() * 100.0) / count, "");
+        }
+        out.endSection();
+
+        out.value("Most common mood", mostCommonMood);
+        out.value("Average energy level", avgEnergyLevel, 1, "/10");
+
+        // Calculate mood stability percentage (how often mood changes)
+        double stabilityPercentage = 100.0;
+        if (count > 1) {
+            stabilityPercentage = 100.0 - ((stats.getMoodChanges() * 100.0) / (count - 1));
+        }
+        out.value("Mood stability", stabilityPercentage, 1, "%");
+        out.value("Current mood", stats.getCurrentMood() + " since " + stats.getCurrentMoodSince());
+
+        // Which mood tends to come next after each one, most likely first
+        for (Map.Entry<String, Long> mood : byFrequency) {
+            List<Map.Entry<String, Double>> next = new ArrayList<>(
+                    stats.getNextMoodProbabilities(mood.getKey()).entrySet());
+            if (next.isEmpty()) {
+                continue;
             }
-            
-            // Validate record integrity
-            if (records.stream().anyMatch(r -> r == null || r.getDate() == null || r.getMoodRating() == null ||
-                    r.getEnergyLevel() < 1 || r.getEnergyLevel() > 10)) {
-                return "Error: Invalid mood records found. Please check for null values and valid energy levels (1-10).";
+            next.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+            out.beginSection("After " + mood.getKey());
+            for (Map.Entry<String, Double> entry : next) {
+                out.share(entry.getKey(), stats.getTransitions(mood.getKey(), entry.getKey()), 0, " times",
+                        entry.getValue() * 100, "");
             }
-            
-            // Sort records by date
-            List<MoodRecord> sortedRecords = records.stream()
-                    .sorted((r1, r2) -> r1.getDate().compareTo(r2.getDate()))
-                    .collect(Collectors.toList());
-            
-            // Calculate average energy level
-            double avgEnergyLevel = sortedRecords.stream()
-                    .mapToInt(MoodRecord::getEnergyLevel)
-                    .average()
-                    .orElse(0.0);
-            
-            // Count frequency of each mood
-            Map<String, Long> moodFrequency = sortedRecords.stream()
-                    .collect(Collectors.groupingBy(MoodRecord::getMoodRating, Collectors.counting()));
-            
-            // Find most common mood
-            String mostCommonMood = moodFrequency.entrySet().stream()
-                    .max(Map.Entry.comparingByValue())
-                    .map(Map.Entry::getKey)
-                    .orElse("None");
-            
-            // Calculate mood stability (how often mood changes)
-            int moodChanges = 0;
-            String prevMood = null;
-            for (MoodRecord record : sortedRecords) {
-                if (prevMood != null && !prevMood.equals(record.getMoodRating())) {
-                    moodChanges++;
+            out.endSection();
+        }
+
+        // How many days a stay in each mood lasts before it changes
+        Map<String, Double> stayDays = stats.getAverageStayDays();
+        if (!stayDays.isEmpty()) {
+            out.beginSection("Average Stay in Mood");
+            for (Map.Entry<String, Long> mood : byFrequency) {
+                Double days = stayDays.get(mood.getKey());
+                if (days != null) {
+                    out.value(mood.getKey(), days, 1, " days");
                 }
-                prevMood = record.getMoodRating();
-            }
-            
-            // Calculate days covered
-            long daysCovered = 0;
-            if (sortedRecords.size() > 1) {
-                LocalDate firstDate = sortedRecords.get(0).getDate();
-                LocalDate lastDate = sortedRecords.get(sortedRecords.size() - 1).getDate();
-                daysCovered = ChronoUnit.DAYS.between(firstDate, lastDate) + 1;
-            } else {
-                daysCovered = 1;
-            }
-            
-            // Build the analysis report
-            StringBuilder report = new StringBuilder();
-            report.append("Mood Analysis Report\n");
-            report.append("===================\n\n");
-            report.append(String.format("Period: %d days\n", daysCovered));
-            report.append(String.format("Number of records: %d\n\n", sortedRecords.size()));
-            
-            report.append("Mood Distribution:\n");
-            moodFrequency.entrySet().stream()
-                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                    .forEach(entry -> {
-                        double percentage = (entry.getValue() * 100.0) / sortedRecords.size();
-                        report.append(String.format("  %s: %d times (%.1f%%)\n", 
-                                entry.getKey(), entry.getValue(), percentage));
-                    });
-            
-            report.append("\nMost common mood: " + mostCommonMood + "\n");
-            report.append(String.format("Average energy level: %.1f/10\n", avgEnergyLevel));
-            
-            // Calculate mood stability percentage
-            double stabilityPercentage = 100.0;
-            if (sortedRecords.size() > 1) {
-                stabilityPercentage = 100.0 - ((moodChanges * 100.0) / (sortedRecords.size() - 1));
             }
-            report.append(String.format("Mood stability: %.1f%%\n", stabilityPercentage));
-            
-            return report.toString();
-        } catch (IllegalArgumentException e) {
-            return "Invalid data format in mood records: " + e.getMessage();
-        } catch (Exception e) {
-            return "Error during mood analysis: " + e.getMessage() + 
-                   "\nPlease ensure all records are properly formatted and try again.";
+            out.endSection();
         }
     }
-    
+
     // Correlate mood with health metrics
     public String correlateMoodWithHealth(List<MoodRecord> moodRecords, List<HealthRecord> healthRecords) {
+        return ReportWriter.toText(out -> writeMoodHealthCorrelation(moodRecords, healthRecords, out));
+    }
+
+    // Correlate mood with health metrics, from records streamed in date order
+    public String correlateMoodWithHealth(Stream<MoodRecord> moodRecords, Stream<HealthRecord> healthRecords) {
+        return ReportWriter.toText(out -> writeMoodHealthCorrelation(moodRecords, healthRecords, out));
+    }
+
+    // Write the correlation of mood with health metrics on the days that have both
+    public void writeMoodHealthCorrelation(List<MoodRecord> moodRecords, List<HealthRecord> healthRecords,
+                                           ReportWriter out) throws IOException {
+        if (moodRecords == null || healthRecords == null) {
+            out.note("Error: Mood records or health records are null.");
+            return;
+        }
+        writeMoodHealthCorrelation(() -> MoodHealthJoin.of(moodRecords, healthRecords), out);
+    }
+
+    // Write the correlation from records streamed in date order, merging them as they arrive
+    public void writeMoodHealthCorrelation(Stream<MoodRecord> moodRecords, Stream<HealthRecord> healthRecords,
+                                           ReportWriter out) throws IOException {
+        if (moodRecords == null || healthRecords == null) {
+            out.note("Error: Mood records or health records are null.");
+            return;
+        }
+        writeMoodHealthCorrelation(() -> MoodHealthJoin.of(moodRecords, healthRecords), out);
+    }
+
+    private void writeMoodHealthCorrelation(Supplier<MoodHealthJoin> join, ReportWriter out) throws IOException {
         try {
-            // Validate input parameters
-            if (moodRecords == null || healthRecords == null) {
-                return "Error: Mood records or health records are null.";
-            }
-            if (moodRecords.isEmpty() || healthRecords.isEmpty()) {
-                return "Insufficient data: No mood or health records available for analysis.";
-            }
-            
+        // Join the records on date, averaging records that share a day
+        MoodHealthJoin joined = join.get();
+
             // Validate data integrity
-            if (moodRecords.stream().anyMatch(r -> r == null || r.getDate() == null) ||
-                healthRecords.stream().anyMatch(r -> r == null || r.getDate() == null)) {
-                return "Error: Invalid records found with null values.";
+            if (joined.getNullRecords() > 0) {
+                out.note("Error: Invalid records found with null values.");
+                return;
+            }
+            if (joined.getMoodDays() == 0 || joined.getHealthDays() == 0) {
+                out.note("Insufficient data: No mood or health records available for analysis.");
+                return;
             }
-        
-        // Create a map of health records by date for easy lookup
-        Map<LocalDate, HealthRecord> healthByDate = healthRecords.stream()
-                .collect(Collectors.toMap(
-                    HealthRecord::getDate,
-                    record -> record,
-                    (existing, replacement) -> existing // Keep first record in case of duplicates
-                ));
-        
-        // Find matching records (same date)
-        List<MoodRecord> matchedMoodRecords = moodRecords.stream()
-                .filter(mood -> healthByDate.containsKey(mood.getDate()))
-                .collect(Collectors.toList());
-        
-        if (matchedMoodRecords.isEmpty()) {
-            return "No matching dates found between mood and health records.\n" +
-                   "Tip: Ensure you have mood and health records for the same dates.";
-        }
-        
+
+        if (joined.size() == 0) {
+            out.note("No matching dates found between mood and health records.\n" +
+                   "Tip: Ensure you have mood and health records for the same dates.");
+            return;
+        }
+
         // Validate energy levels
-        if (matchedMoodRecords.stream().anyMatch(r -> r.getEnergyLevel() < 1 || r.getEnergyLevel() > 10)) {
-            return "Error: Invalid energy levels found. Energy levels must be between 1 and 10.";
+        if (joined.getInvalidEnergyLevels() > 0) {
+            out.note("Error: Invalid energy levels found. Energy levels must be between 1 and 10.");
+            return;
         }
-        
+
         // Calculate correlations
+        double[] energy = joined.getEnergy();
+        double[] sleep = joined.getMetric(Rollup.Metric.SLEEP_HOURS);
         double totalSleepHighEnergy = 0;
         int countHighEnergy = 0;
         double totalSleepLowEnergy = 0;
         int countLowEnergy = 0;
-        
-        for (MoodRecord moodRecord : matchedMoodRecords) {
-            HealthRecord healthRecord = healthByDate.get(moodRecord.getDate());
-            
+
+        for (int day = 0; day < joined.size(); day++) {
             // Consider energy level >= 7 as high energy
-            if (moodRecord.getEnergyLevel() >= 7) {
-                totalSleepHighEnergy += healthRecord.getSleepHours();
+            if (energy[day] >= 7) {
+                totalSleepHighEnergy += sleep[day];
                 countHighEnergy++;
             } else {
-                totalSleepLowEnergy += healthRecord.getSleepHours();
+                totalSleepLowEnergy += sleep[day];
                 countLowEnergy++;
             }
         }
-        
+
         // Calculate averages
         double avgSleepHighEnergy = countHighEnergy > 0 ? totalSleepHighEnergy / countHighEnergy : 0;
         double avgSleepLowEnergy = countLowEnergy > 0 ? totalSleepLowEnergy / countLowEnergy : 0;
-        
-        // Build correlation report
-        StringBuilder report = new StringBuilder();
-        report.append("Mood-Health Correlation Report\n");
-        report.append("=============================\n\n");
-        report.append(String.format("Matching records found: %d\n\n", matchedMoodRecords.size()));
-        
-        report.append("Sleep and Energy Level Correlation:\n");
+
+        // Pearson and Spearman coefficients of energy against every metric, one metric per task
+        Rollup.Metric[] metrics = Rollup.Metric.values();
+        double[] energyRanks = Correlation.ranks(energy);
+        double[][] coefficients = new double[metrics.length][];
+        // and of energy against each metric logged 1 to MAX_LAG_DAYS days earlier
+        LaggedCorrelation[] lagged = new LaggedCorrelation[metrics.length];
+        double[] dayEnergy = LaggedCorrelation.energy(joined);
+        IntStream.range(0, metrics.length).parallel().forEach(i -> {
+            double[] values = joined.getMetric(metrics[i]);
+            coefficients[i] = new double[] {
+                    Correlation.pearson(energy, values),
+                    Correlation.pearson(energyRanks, Correlation.ranks(values))
+            };
+            lagged[i] = LaggedCorrelation.of(joined, dayEnergy, metrics[i], MAX_LAG_DAYS);
+        });
+
+        // Write correlation report
+        out.beginReport("Mood-Health Correlation Report");
+        out.value("Matching records found", joined.getMatchedMoodRecords(), "");
+        out.value("Matching days found", joined.size(), "");
+
+        out.beginSection("Sleep and Energy Level Correlation");
         if (countHighEnergy > 0) {
-            report.append(String.format("  Average sleep when energy level is high (7-10): %.1f hours\n", avgSleepHighEnergy));
+            out.value("Average sleep when energy level is high (7-10)", avgSleepHighEnergy, 1, " hours");
         }
         if (countLowEnergy > 0) {
-            report.append(String.format("  Average sleep when energy level is low (1-6): %.1f hours\n", avgSleepLowEnergy));
+            out.value("Average sleep when energy level is low (1-6)", avgSleepLowEnergy, 1, " hours");
         }
-        
+        out.endSection();
+
         // Add sleep difference insight
         if (countHighEnergy > 0 && countLowEnergy > 0) {
             double sleepDiff = avgSleepHighEnergy - avgSleepLowEnergy;
             if (Math.abs(sleepDiff) >= 0.5) {
-                report.append(String.format("\nInsight: On days with high energy, you sleep %.1f hours %s than on low energy days.\n",
+                out.note(String.format("Insight: On days with high energy, you sleep %.1f hours %s than on low energy days.",
                         Math.abs(sleepDiff), sleepDiff > 0 ? "more" : "less"));
             } else {
-                report.append("\nInsight: Your sleep duration doesn't seem to significantly affect your energy levels.\n");
+                out.note("Insight: Your sleep duration doesn't seem to significantly affect your energy levels.");
+            }
+        }
+
+        // Coefficients run from -1 to 1; NaN when a series doesn't vary
+        int strongest = -1;
+        for (int i = 0; i < metrics.length; i++) {
+            out.beginSection(metrics[i].getLabel() + " vs Energy Level");
+            writeCoefficient("Pearson", coefficients[i][0], out);
+            writeCoefficient("Spearman", coefficients[i][1], out);
+            out.endSection();
+            if (!Double.isNaN(coefficients[i][1]) && (strongest < 0
+                    || Math.abs(coefficients[i][1]) > Math.abs(coefficients[strongest][1]))) {
+                strongest = i;
+            }
+        }
+        if (strongest >= 0 && Math.abs(coefficients[strongest][1]) >= 0.3) {
+            out.note(String.format("Insight: Your energy level tends to be %s when your %s is higher.",
+                    coefficients[strongest][1] > 0 ? "higher" : "lower",
+                    metrics[strongest].getLabel().toLowerCase()));
+        }
+
+        // Strongest delays between each metric and the energy level that follows it
+        int strongestLagMetric = -1;
+        int strongestLag = 0;
+        for (int i = 0; i < metrics.length; i++) {
+            out.beginSection(metrics[i].getLabel() + " vs Later Energy Level");
+            List<Integer> lags = lagged[i].strongestLags(3, MIN_LAG_PAIRS);
+            if (lags.isEmpty()) {
+                out.note("Not enough data or variation");
+            }
+            for (int lag : lags) {
+                out.value(lagLabel(lag), lagged[i].getCoefficient(lag), 2, "");
+                if (strongestLagMetric < 0 || Math.abs(lagged[i].getCoefficient(lag))
+                        > Math.abs(lagged[strongestLagMetric].getCoefficient(strongestLag))) {
+                    strongestLagMetric = i;
+                    strongestLag = lag;
+                }
             }
+            out.endSection();
+        }
+        if (strongestLagMetric >= 0 && Math.abs(lagged[strongestLagMetric].getCoefficient(strongestLag)) >= 0.3) {
+            out.note(String.format("Insight: Your energy level tends to be %s when your %s was higher %s.",
+                    lagged[strongestLagMetric].getCoefficient(strongestLag) > 0 ? "higher" : "lower",
+                    metrics[strongestLagMetric].getLabel().toLowerCase(), lagLabel(strongestLag).toLowerCase()));
         }
-        
-            return report.toString();
         } catch (IllegalArgumentException e) {
-            return "Invalid data format: " + e.getMessage();
-        } catch (Exception e) {
-            return "Error during correlation analysis: " + e.getMessage() + 
-                   "\nPlease ensure all records are properly formatted and try again.";
+            out.note("Invalid data format: " + e.getMessage());
+        } catch (RuntimeException e) {
+            out.note("Error during correlation analysis: " + e.getMessage() + 
+                     "\nPlease ensure all records are properly formatted and try again.");
+        }
+    }
+
+    private static String lagLabel(int lag) {
+        return lag == 1 ? "1 day before" : lag + " days before";
+    }
+
+    private static void writeCoefficient(String label, double coefficient, ReportWriter out) throws IOException {
+        if (Double.isNaN(coefficient)) {
+            out.value(label, "Not enough variation");
+        } else {
+            out.value(label, coefficient, 2, "");
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,83 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Process-wide vocabulary of mood labels. Labels are normalised to a capital first letter and
+// lower case after it, so "happy" and "HAPPY " are the same mood, and each distinct label gets a
+// byte id the first time it is seen. Mood counts can then be arrays indexed by id, and stored
+// moods take one byte each. Ids are never reused or removed. The last id is kept for OTHER, so
+// once the others are used up any new label is counted as OTHER instead of failing.
+public class MoodVocabulary {
+    // Id standing for a missing label
+    public static final byte NONE = -1;
+    // Ids run from 0 to 254 read as unsigned bytes; 255 is NONE
+    public static final int CAPACITY = 255;
+    // Label whose id new labels share once every other id is taken
+    public static final String OTHER = "Other";
+
+    private static final ConcurrentHashMap<String, Byte> IDS = new ConcurrentHashMap<>();
+    // Indexed by unsigned id; replaced, never modified in place, once published
+    private static volatile String[] labels = new String[16];
+    private static int size;
+
+    private MoodVocabulary() {
+    }
+
+    // Trimmed, with a capital first letter and lower case after it; null stays null
+    public static String normalize(String label) {
+        if (label == null) {
+            return null;
+        }
+        String trimmed = label.trim();
+        if (trimmed.isEmpty()) {
+            return trimmed;
+        }
+        return trimmed.substring(0, 1).toUpperCase(Locale.ROOT) + trimmed.substring(1).toLowerCase(Locale.ROOT);
+    }
+
+    // Id of the label, assigning the next free one if it is new, or OTHER's if none is left;
+    // NONE for null
+    public static byte idOf(String label) {
+        if (label == null) {
+            return NONE;
+        }
+        String normalized = normalize(label);
+        Byte id = IDS.get(normalized);
+        return id != null ? id : assign(normalized);
+    }
+
+    // Id of the label, or -1 if it has never been seen
+    public static int find(String label) {
+        Byte id = label == null ? null : IDS.get(normalize(label));
+        return id != null ? id & 0xFF : -1;
+    }
+
+    // Normalised label of an id; null for NONE
+    public static String labelOf(byte id) {
+        return id == NONE ? null : labels[id & 0xFF];
+    }
+
+    // One more than the highest id assigned so far, read as unsigned
+    public static int size() {
+        return size;
+    }
+
+    private static synchronized byte assign(String label) {
+        Byte existing = IDS.get(label);
+        if (existing != null) {
+            return existing;
+        }
+        if (size >= CAPACITY - 1 && !label.equals(OTHER)) {
+            return assign(OTHER);
+        }
+        String[] current = labels;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, Math.min(size * 2, CAPACITY));
+        }
+        current[size] = label;
+        labels = current;
+        // Publish the label before the id so labelOf never sees an id it can't resolve
+        IDS.put(label, (byte) size);
+        return (byte) size++;
+    }
+}
@@ -0,0 +1,394 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Inverted index over the notes of mood records. Notes are split into lower-case words of letters
+// and digits (apostrophes dropped, so "don't" is "dont"); each word keeps a postings list of the
+// records it appears in, sorted by record id, with each record's date and the word's positions in
+// its notes. Queries combine words and "quoted phrases" with AND and OR, AND binding tighter and
+// words side by side meaning AND, e.g. stressed AND project OR "deadline moved". Matching
+// records come back in date order.
+public class NoteIndex {
+    private static final int MAGIC = 0x48544E49; // "HTNI"
+    private static final byte VERSION = 1;
+
+    private final Map<String, Postings> words = new HashMap<>();
+    // Changed since last written
+    private boolean dirty;
+
+    // Index the notes of a new record
+    public void add(MoodRecord record) {
+        List<String> tokens = tokenize(record.getNotes());
+        Map<String, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            positions.computeIfAbsent(tokens.get(i), word -> new ArrayList<>()).add(i);
+        }
+        int day = (int) record.getDate().toEpochDay();
+        for (Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+            int[] at = new int[entry.getValue().size()];
+            for (int i = 0; i < at.length; i++) {
+                at[i] = entry.getValue().get(i);
+            }
+            words.computeIfAbsent(entry.getKey(), word -> new Postings()).add(record.getId(), day, at);
+        }
+        dirty = true;
+    }
+
+    // Drop a record, as it was when indexed
+    public void remove(MoodRecord record) {
+        for (String word : tokenize(record.getNotes())) {
+            Postings postings = words.get(word);
+            if (postings != null) {
+                postings.remove(record.getId());
+                if (postings.size == 0) {
+                    words.remove(word);
+                }
+            }
+        }
+        dirty = true;
+    }
+
+    // Ids of the records whose notes match the query, in date order (ties by id); throws
+    // IllegalArgumentException, saying what is wrong, for a quote left open or an AND or OR
+    // without a term on each side
+    public List<Long> search(String query) {
+        Postings matches = new QueryParser(query).parse();
+        Integer[] order = new Integer[matches.size];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> matches.days[a] != matches.days[b]
+                ? Integer.compare(matches.days[a], matches.days[b]) : Long.compare(matches.ids[a], matches.ids[b]));
+        List<Long> ids = new ArrayList<>(order.length);
+        for (int i : order) {
+            ids.add(matches.ids[i]);
+        }
+        return ids;
+    }
+
+    // Number of distinct words indexed
+    public int size() {
+        return words.size();
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    // Lower-case words of letters and digits, in order
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if ((c != '\'' && c != '\u2019') || word.length() == 0) {
+                if (word.length() > 0) {
+                    tokens.add(word.toString().toLowerCase(Locale.ROOT));
+                    word.setLength(0);
+                }
+            }
+        }
+        if (word.length() > 0) {
+            tokens.add(word.toString().toLowerCase(Locale.ROOT));
+        }
+        return tokens;
+    }
+
+    // Order-independent checksum of the records' ids, dates and notes; a stored index is only
+    // reused for records with the same fingerprint
+    public static long fingerprint(MoodColumns records) {
+        long sum = records.size();
+        for (int row = 0; row < records.size(); row++) {
+            long mixed = records.getId(row) * 0x9E3779B97F4A7C15L + records.getEpochDay(row);
+            mixed = mixed * 0x9E3779B97F4A7C15L + records.getNotes(row).hashCode();
+            mixed ^= mixed >>> 31;
+            mixed *= 0xBF58476D1CE4E5B9L;
+            sum += mixed ^ (mixed >>> 29);
+        }
+        return sum;
+    }
+
+    // Build the index of every record
+    public static NoteIndex of(MoodColumns records) {
+        NoteIndex index = new NoteIndex();
+        for (int row = 0; row < records.size(); row++) {
+            index.add(records.record(row));
+        }
+        return index;
+    }
+
+    // Write the index, tagged with the fingerprint of the records it covers
+    public void write(DataOutputStream out, long fingerprint) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(fingerprint);
+        out.writeInt(words.size());
+        for (Map.Entry<String, Postings> entry : words.entrySet()) {
+            Postings postings = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeInt(postings.size);
+            for (int i = 0; i < postings.size; i++) {
+                out.writeLong(postings.ids[i]);
+                out.writeInt(postings.days[i]);
+                out.writeInt(postings.positions[i].length);
+                for (int position : postings.positions[i]) {
+                    out.writeInt(position);
+                }
+            }
+        }
+        dirty = false;
+    }
+
+    // Read an index written for records with the given fingerprint, or null if it was written
+    // for others
+    public static NoteIndex read(DataInputStream in, long fingerprint) throws IOException {
+        if (in.readInt() != MAGIC || in.readByte() != VERSION || in.readLong() != fingerprint) {
+            return null;
+        }
+        NoteIndex index = new NoteIndex();
+        int wordCount = in.readInt();
+        for (int w = 0; w < wordCount; w++) {
+            String word = in.readUTF();
+            Postings postings = new Postings();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                long id = in.readLong();
+                int day = in.readInt();
+                int[] positions = new int[in.readInt()];
+                for (int p = 0; p < positions.length; p++) {
+                    positions[p] = in.readInt();
+                }
+                postings.add(id, day, positions);
+            }
+            index.words.put(word, postings);
+        }
+        return index;
+    }
+
+    // Records a word appears in, sorted by id, with each one's epoch day and the word's positions
+    private static class Postings {
+        long[] ids = new long[4];
+        int[] days = new int[4];
+        int[][] positions = new int[4][];
+        int size;
+
+        void add(long id, int day, int[] at) {
+            int index = size;
+            if (size > 0 && ids[size - 1] >= id) {
+                // Out of id order: find its place, replacing an entry with the same id
+                index = Arrays.binarySearch(ids, 0, size, id);
+                if (index >= 0) {
+                    days[index] = day;
+                    positions[index] = at;
+                    return;
+                }
+                index = -index - 1;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                days = Arrays.copyOf(days, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            System.arraycopy(days, index, days, index + 1, size - index);
+            System.arraycopy(positions, index, positions, index + 1, size - index);
+            ids[index] = id;
+            days[index] = day;
+            positions[index] = at;
+            size++;
+        }
+
+        void remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            System.arraycopy(days, index + 1, days, index, size - index - 1);
+            System.arraycopy(positions, index + 1, positions, index, size - index - 1);
+            size--;
+            positions[size] = null;
+        }
+
+        // Entries in both, by merging the sorted ids
+        Postings and(Postings other) {
+            Postings result = new Postings();
+            int i = 0;
+            int j = 0;
+            while (i < size && j < other.size) {
+                if (ids[i] < other.ids[j]) {
+                    i++;
+                } else if (ids[i] > other.ids[j]) {
+                    j++;
+                } else {
+                    result.add(ids[i], days[i], positions[i]);
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        // Entries in either, by merging the sorted ids
+        Postings or(Postings other) {
+            Postings result = new Postings();
+            int i = 0;
+            int j = 0;
+            while (i < size || j < other.size) {
+                if (j == other.size || (i < size && ids[i] < other.ids[j])) {
+                    result.add(ids[i], days[i], positions[i]);
+                    i++;
+                } else if (i == size || ids[i] > other.ids[j]) {
+                    result.add(other.ids[j], other.days[j], other.positions[j]);
+                    j++;
+                } else {
+                    result.add(ids[i], days[i], positions[i]);
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        // Entries where the other word comes offset positions after this one; keeps the other's
+        // positions so phrases can be extended word by word
+        Postings followedBy(Postings other) {
+            Postings result = new Postings();
+            int i = 0;
+            int j = 0;
+            while (i < size && j < other.size) {
+                if (ids[i] < other.ids[j]) {
+                    i++;
+                } else if (ids[i] > other.ids[j]) {
+                    j++;
+                } else {
+                    int[] next = adjacent(positions[i], other.positions[j]);
+                    if (next.length > 0) {
+                        result.add(ids[i], days[i], next);
+                    }
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        // Positions in after that directly follow one in before; both ascending
+        private static int[] adjacent(int[] before, int[] after) {
+            int[] matches = new int[after.length];
+            int count = 0;
+            int i = 0;
+            for (int position : after) {
+                while (i < before.length && before[i] < position - 1) {
+                    i++;
+                }
+                if (i < before.length && before[i] == position - 1) {
+                    matches[count++] = position;
+                }
+            }
+            return Arrays.copyOf(matches, count);
+        }
+    }
+
+    // Recursive descent over: query = and ("OR" and)*; and = term ("AND"? term)*;
+    // term = word | "quoted phrase". AND and OR are recognised in any case.
+    private class QueryParser {
+        private final List<String> tokens = new ArrayList<>();
+        private int next;
+
+        QueryParser(String query) {
+            int i = 0;
+            while (i < query.length()) {
+                char c = query.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '"') {
+                    int end = query.indexOf('"', i + 1);
+                    if (end < 0) {
+                        throw new IllegalArgumentException("a quote is not closed");
+                    }
+                    tokens.add(query.substring(i, end));
+                    i = end + 1;
+                } else {
+                    int end = i;
+                    while (end < query.length() && !Character.isWhitespace(query.charAt(end))
+                            && query.charAt(end) != '"') {
+                        end++;
+                    }
+                    tokens.add(query.substring(i, end));
+                    i = end;
+                }
+            }
+        }
+
+        Postings parse() {
+            Postings result = null;
+            while (next < tokens.size()) {
+                Postings conjunction = parseAnd();
+                if (conjunction != null) {
+                    result = result == null ? conjunction : result.or(conjunction);
+                }
+                // Step over the OR that ended the conjunction; one at the very end has nothing after it
+                if (next < tokens.size() && ++next == tokens.size()) {
+                    throw new IllegalArgumentException("OR needs a search term on each side");
+                }
+            }
+            return result != null ? result : new Postings();
+        }
+
+        // Terms up to the next OR; null if none of them holds a word
+        private Postings parseAnd() {
+            Postings result = null;
+            boolean anyTerm = false;
+            boolean afterAnd = false;
+            while (next < tokens.size() && !tokens.get(next).equalsIgnoreCase("OR")) {
+                String token = tokens.get(next++);
+                if (token.equalsIgnoreCase("AND")) {
+                    if (!anyTerm || afterAnd) {
+                        throw new IllegalArgumentException("AND needs a search term on each side");
+                    }
+                    afterAnd = true;
+                    continue;
+                }
+                anyTerm = true;
+                afterAnd = false;
+                Postings term = phrase(tokenize(token.startsWith("\"") ? token.substring(1) : token));
+                if (term != null) {
+                    result = result == null ? term : result.and(term);
+                }
+            }
+            if (afterAnd) {
+                throw new IllegalArgumentException("AND needs a search term on each side");
+            }
+            if (!anyTerm) {
+                throw new IllegalArgumentException("OR needs a search term on each side");
+            }
+            return result;
+        }
+
+        // Records with the words one after another; a lone word is a phrase of one. Null if the
+        // text holds no words at all.
+        private Postings phrase(List<String> phraseWords) {
+            if (phraseWords.isEmpty()) {
+                return null;
+            }
+            Postings result = words.getOrDefault(phraseWords.get(0), new Postings());
+            for (int i = 1; i < phraseWords.size(); i++) {
+                result = result.followedBy(words.getOrDefault(phraseWords.get(i), new Postings()));
+            }
+            return result;
+        }
+    }
+}
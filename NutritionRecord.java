@@ -131,36 +131,7 @@ public class NutritionRecord {
     
     // Create NutritionRecord from file string
     public static NutritionRecord fromFileString(String line) {
-        String[] parts = line.split(",");
-        if (parts.length < 8) {
-            throw new IllegalArgumentException("Invalid nutrition record format: " + line);
-        }
-        
-        LocalDate date = LocalDate.parse(parts[0]);
-        String mealType = parts[1];
-        String foodName = parts[2].replace("[comma]", ",");
-        double calories = Double.parseDouble(parts[3]);
-        double protein = Double.parseDouble(parts[4]);
-        double carbs = Double.parseDouble(parts[5]);
-        double fat = Double.parseDouble(parts[6]);
-        double fiber = Double.parseDouble(parts[7]);
-        
-        NutritionRecord record = new NutritionRecord(date, mealType, foodName, calories, protein, carbs, fat, fiber);
-        
-        // Parse micronutrients if present
-        if (parts.length > 8) {
-            String[] micronutrientParts = parts[8].split("\\|");
-            for (String micronutrient : micronutrientParts) {
-                String[] nutrientParts = micronutrient.split(":");
-                if (nutrientParts.length == 2) {
-                    String name = nutrientParts[0].replace("[colon]", ":");
-                    double amount = Double.parseDouble(nutrientParts[1]);
-                    record.addMicronutrient(name, amount);
-                }
-            }
-        }
-        
-        return record;
+        return RecordParser.parseNutritionRecord(line);
     }
     
     @Override
@@ -1,5 +1,7 @@
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.DoubleSummaryStatistics;
 import java.util.HashMap;
 import java.util.List;
@@ -17,8 +19,14 @@ public class NutritionTracker {
     
     // Generate nutrition summary for a given period
     public String generateNutritionSummary(List<NutritionRecord> records, int days) {
+        return ReportWriter.toText(out -> writeNutritionSummary(records, days, out));
+    }
+    
+    // Write the nutrition summary for a given period
+    public void writeNutritionSummary(List<NutritionRecord> records, int days, ReportWriter out) throws IOException {
         if (records == null || records.isEmpty()) {
-            return "No nutrition records available for analysis.";
+            out.note("No nutrition records available for analysis.");
+            return;
         }
         
         // Filter records for the specified period
@@ -30,7 +38,8 @@ public class NutritionTracker {
                 .collect(Collectors.toList());
         
         if (filteredRecords.isEmpty()) {
-            return "No nutrition records found for the past " + days + " days.";
+            out.note("No nutrition records found for the past " + days + " days.");
+            return;
         }
         
         // Calculate daily averages
@@ -59,62 +68,63 @@ public class NutritionTracker {
             fiberStats.accept(dailyFiber);
         }
         
-        // Build the summary report
-        StringBuilder report = new StringBuilder();
-        report.append("Nutrition Summary Report\n");
-        report.append("========================\n\n");
-        report.append(String.format("Period: Last %d days\n", days));
-        report.append(String.format("Days with records: %d\n\n", recordsByDate.size()));
-        
-        report.append("Daily Averages:\n");
-        report.append(String.format("  Calories: %.1f (%.1f%% of recommended)\n", 
-                caloriesStats.getAverage(), (caloriesStats.getAverage() / RECOMMENDED_CALORIES) * 100));
-        report.append(String.format("  Protein: %.1fg (%.1f%% of recommended)\n", 
-                proteinStats.getAverage(), (proteinStats.getAverage() / RECOMMENDED_PROTEIN) * 100));
-        report.append(String.format("  Carbs: %.1fg (%.1f%% of recommended)\n", 
-                carbsStats.getAverage(), (carbsStats.getAverage() / RECOMMENDED_CARBS) * 100));
-        report.append(String.format("  Fat: %.1fg (%.1f%% of recommended)\n", 
-                fatStats.getAverage(), (fatStats.getAverage() / RECOMMENDED_FAT) * 100));
-        report.append(String.format("  Fiber: %.1fg (%.1f%% of recommended)\n\n", 
-                fiberStats.getAverage(), (fiberStats.getAverage() / RECOMMENDED_FIBER) * 100));
+        // Write the summary report
+        out.beginReport("Nutrition Summary Report");
+        out.value("Period", "Last " + days + " days");
+        out.value("Days with records", recordsByDate.size(), "");
+        
+        out.beginSection("Daily Averages");
+        out.share("Calories", caloriesStats.getAverage(), 1, "",
+                (caloriesStats.getAverage() / RECOMMENDED_CALORIES) * 100, "of recommended");
+        out.share("Protein", proteinStats.getAverage(), 1, "g",
+                (proteinStats.getAverage() / RECOMMENDED_PROTEIN) * 100, "of recommended");
+        out.share("Carbs", carbsStats.getAverage(), 1, "g",
+                (carbsStats.getAverage() / RECOMMENDED_CARBS) * 100, "of recommended");
+        out.share("Fat", fatStats.getAverage(), 1, "g",
+                (fatStats.getAverage() / RECOMMENDED_FAT) * 100, "of recommended");
+        out.share("Fiber", fiberStats.getAverage(), 1, "g",
+                (fiberStats.getAverage() / RECOMMENDED_FIBER) * 100, "of recommended");
+        out.endSection();
         
         // Most common meal types
         Map<String, Long> mealTypeCounts = filteredRecords.stream()
                 .collect(Collectors.groupingBy(NutritionRecord::getMealType, Collectors.counting()));
         
-        report.append("Meal Distribution:\n");
-        mealTypeCounts.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .forEach(entry -> {
-                    double percentage = (entry.getValue() * 100.0) / filteredRecords.size();
-                    report.append(String.format("  %s: %.1f%%\n", entry.getKey(), percentage));
-                });
+        out.beginSection("Meal Distribution");
+        List<Map.Entry<String, Long>> byCount = new ArrayList<>(mealTypeCounts.entrySet());
+        byCount.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        for (Map.Entry<String, Long> entry : byCount) {
+            double percentage = (entry.getValue() * 100.0) / filteredRecords.size();
+            out.value(entry.getKey(), percentage, 1, "%");
+        }
+        out.endSection();
         
         // Nutrition insights
-        report.append("\nNutrition Insights:\n");
+        out.beginSection("Nutrition Insights");
         
         // Calorie balance
         if (caloriesStats.getAverage() < RECOMMENDED_CALORIES * 0.8) {
-            report.append("  • Your calorie intake is significantly below recommendations. " +
-                          "Consider increasing your food intake.\n");
+            out.note("Your calorie intake is significantly below recommendations. " +
+                     "Consider increasing your food intake.");
         } else if (caloriesStats.getAverage() > RECOMMENDED_CALORIES * 1.2) {
-            report.append("  • Your calorie intake is above recommendations. " +
-                          "Consider moderating your food intake.\n");
+            out.note("Your calorie intake is above recommendations. " +
+                     "Consider moderating your food intake.");
         } else {
-            report.append("  • Your calorie intake is within a healthy range.\n");
+            out.note("Your calorie intake is within a healthy range.");
         }
         
         // Protein intake
         if (proteinStats.getAverage() < RECOMMENDED_PROTEIN * 0.8) {
-            report.append("  • Your protein intake is low. Consider adding more lean meats, " +
-                          "dairy, beans, or protein supplements.\n");
+            out.note("Your protein intake is low. Consider adding more lean meats, " +
+                     "dairy, beans, or protein supplements.");
         }
         
         // Fiber intake
         if (fiberStats.getAverage() < RECOMMENDED_FIBER * 0.8) {
-            report.append("  • Your fiber intake is low. Try to eat more fruits, vegetables, " +
-                          "and whole grains.\n");
+            out.note("Your fiber intake is low. Try to eat more fruits, vegetables, " +
+                     "and whole grains.");
         }
+        out.endSection();
         
         // Macronutrient balance
         double totalMacros = proteinStats.getAverage() + carbsStats.getAverage() + fatStats.getAverage();
@@ -123,24 +133,23 @@ public class NutritionTracker {
             double carbsPercentage = (carbsStats.getAverage() / totalMacros) * 100;
             double fatPercentage = (fatStats.getAverage() / totalMacros) * 100;
             
-            report.append(String.format("\nMacronutrient Distribution:\n"));
-            report.append(String.format("  Protein: %.1f%%\n", proteinPercentage));
-            report.append(String.format("  Carbs: %.1f%%\n", carbsPercentage));
-            report.append(String.format("  Fat: %.1f%%\n", fatPercentage));
+            out.beginSection("Macronutrient Distribution");
+            out.value("Protein", proteinPercentage, 1, "%");
+            out.value("Carbs", carbsPercentage, 1, "%");
+            out.value("Fat", fatPercentage, 1, "%");
             
             // Check if macronutrient distribution is balanced
             if (proteinPercentage < 10 || proteinPercentage > 35) {
-                report.append("  • Your protein distribution is outside the recommended range (10-35%).\n");
+                out.note("Your protein distribution is outside the recommended range (10-35%).");
             }
             if (carbsPercentage < 45 || carbsPercentage > 65) {
-                report.append("  • Your carbohydrate distribution is outside the recommended range (45-65%).\n");
+                out.note("Your carbohydrate distribution is outside the recommended range (45-65%).");
             }
             if (fatPercentage < 20 || fatPercentage > 35) {
-                report.append("  • Your fat distribution is outside the recommended range (20-35%).\n");
+                out.note("Your fat distribution is outside the recommended range (20-35%).");
             }
+            out.endSection();
         }
-        
-        return report.toString();
     }
     
     // Calculate daily calorie needs based on user profile (can be expanded)
@@ -168,36 +177,41 @@ public class NutritionTracker {
     
     // Generate meal suggestions based on nutritional goals
     public String generateMealSuggestions(double targetCalories, double targetProtein) {
-        StringBuilder suggestions = new StringBuilder();
-        suggestions.append("Meal Suggestions\n");
-        suggestions.append("================\n\n");
-        suggestions.append(String.format("Based on your target of %.0f calories and %.0fg protein:\n\n", 
-                targetCalories, targetProtein));
+        return ReportWriter.toText(out -> writeMealSuggestions(targetCalories, targetProtein, out));
+    }
+    
+    // Write meal suggestions based on nutritional goals
+    public void writeMealSuggestions(double targetCalories, double targetProtein, ReportWriter out) throws IOException {
+        out.beginReport("Meal Suggestions");
+        out.value("Target calories", targetCalories, 0, "");
+        out.value("Target protein", targetProtein, 0, "g");
         
         // Breakfast suggestions
-        suggestions.append("Breakfast Options:\n");
-        suggestions.append("  • Greek yogurt with berries and honey (300 cal, 20g protein)\n");
-        suggestions.append("  • Oatmeal with milk, banana, and peanut butter (400 cal, 15g protein)\n");
-        suggestions.append("  • Vegetable omelet with whole grain toast (350 cal, 22g protein)\n\n");
+        out.beginSection("Breakfast Options");
+        out.note("Greek yogurt with berries and honey (300 cal, 20g protein)");
+        out.note("Oatmeal with milk, banana, and peanut butter (400 cal, 15g protein)");
+        out.note("Vegetable omelet with whole grain toast (350 cal, 22g protein)");
+        out.endSection();
         
         // Lunch suggestions
-        suggestions.append("Lunch Options:\n");
-        suggestions.append("  • Grilled chicken salad with olive oil dressing (450 cal, 35g protein)\n");
-        suggestions.append("  • Tuna sandwich on whole grain bread with side salad (500 cal, 30g protein)\n");
-        suggestions.append("  • Lentil soup with whole grain roll (400 cal, 18g protein)\n\n");
+        out.beginSection("Lunch Options");
+        out.note("Grilled chicken salad with olive oil dressing (450 cal, 35g protein)");
+        out.note("Tuna sandwich on whole grain bread with side salad (500 cal, 30g protein)");
+        out.note("Lentil soup with whole grain roll (400 cal, 18g protein)");
+        out.endSection();
         
         // Dinner suggestions
-        suggestions.append("Dinner Options:\n");
-        suggestions.append("  • Baked salmon with quinoa and roasted vegetables (550 cal, 40g protein)\n");
-        suggestions.append("  • Lean beef stir-fry with brown rice (600 cal, 35g protein)\n");
-        suggestions.append("  • Bean and vegetable chili with small side of cornbread (500 cal, 25g protein)\n\n");
+        out.beginSection("Dinner Options");
+        out.note("Baked salmon with quinoa and roasted vegetables (550 cal, 40g protein)");
+        out.note("Lean beef stir-fry with brown rice (600 cal, 35g protein)");
+        out.note("Bean and vegetable chili with small side of cornbread (500 cal, 25g protein)");
+        out.endSection();
         
         // Snack suggestions
-        suggestions.append("Snack Options:\n");
-        suggestions.append("  • Apple with 2 tbsp almond butter (200 cal, 7g protein)\n");
-        suggestions.append("  • Protein smoothie with fruit (250 cal, 20g protein)\n");
-        suggestions.append("  • Hummus with carrot and celery sticks (150 cal, 5g protein)\n");
-        
-        return suggestions.toString();
+        out.beginSection("Snack Options");
+        out.note("Apple with 2 tbsp almond butter (200 cal, 7g protein)");
+        out.note("Protein smoothie with fruit (250 cal, 20g protein)");
+        out.note("Hummus with carrot and celery sticks (150 cal, 5g protein)");
+        out.endSection();
     }
 }
\ No newline at end of file
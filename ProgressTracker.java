@@ -1,73 +1,110 @@
+import java.io.IOException;
+import java.time.YearMonth;
+import java.util.Map;
+
 public class ProgressTracker {
     
     // Compare the most recent health record with the user's goal
     public String compareWithGoals(HealthRecord latest, Goal goal) {
+        return ReportWriter.toText(out -> writeProgress(latest, goal, out));
+    }
+        
+    // Write the comparison of the most recent health record with the user's goal
+    public void writeProgress(HealthRecord latest, Goal goal, ReportWriter out) throws IOException {
         if (latest == null || goal == null) {
-            return "No data available for comparison.";
+            out.note("No data available for comparison.");
+            return;
         }
         
-        StringBuilder progress = new StringBuilder();
-        progress.append("Progress Report (" + latest.getDate().toString() + ")\n");
-        progress.append("=================================\n\n");
+        out.beginReport("Progress Report (" + latest.getDate().toString() + ")");
         
         // Compare weight
         if (goal.getTargetWeight() != null) {
             double weightDiff = latest.getWeight() - goal.getTargetWeight();
-            progress.append("Weight:\n");
-            progress.append(String.format("  Current: %.2f kg\n", latest.getWeight()));
-            progress.append(String.format("  Target: %.2f kg\n", goal.getTargetWeight()));
+            out.beginSection("Weight");
+            out.value("Current", latest.getWeight(), 2, " kg");
+            out.value("Target", goal.getTargetWeight(), 2, " kg");
             
             if (weightDiff > 0) {
-                progress.append(String.format("  Status: %.2f kg above target\n\n", Math.abs(weightDiff)));
+                out.value("Status", Math.abs(weightDiff), 2, " kg above target");
             } else if (weightDiff < 0) {
-                progress.append(String.format("  Status: %.2f kg below target\n\n", Math.abs(weightDiff)));
+                out.value("Status", Math.abs(weightDiff), 2, " kg below target");
             } else {
-                progress.append("  Status: Target achieved!\n\n");
+                out.value("Status", "Target achieved!");
             }
+            out.endSection();
         } else {
-            progress.append("Weight: No target set\n\n");
+            out.value("Weight", "No target set");
         }
         
         // Compare sleep hours
         if (goal.getTargetSleepHours() != null) {
             int sleepDiff = latest.getSleepHours() - goal.getTargetSleepHours();
-            progress.append("Sleep:\n");
-            progress.append(String.format("  Current: %d hours\n", latest.getSleepHours()));
-            progress.append(String.format("  Target: %d hours\n", goal.getTargetSleepHours()));
+            out.beginSection("Sleep");
+            out.value("Current", latest.getSleepHours(), " hours");
+            out.value("Target", goal.getTargetSleepHours(), " hours");
             
             if (sleepDiff < 0) {
-                progress.append(String.format("  Status: %d hours below target\n\n", Math.abs(sleepDiff)));
+                out.value("Status", Math.abs(sleepDiff), " hours below target");
             } else if (sleepDiff > 0) {
-                progress.append(String.format("  Status: %d hours above target\n\n", Math.abs(sleepDiff)));
+                out.value("Status", Math.abs(sleepDiff), " hours above target");
             } else {
-                progress.append("  Status: Target achieved!\n\n");
+                out.value("Status", "Target achieved!");
             }
+            out.endSection();
         } else {
-            progress.append("Sleep: No target set\n\n");
+            out.value("Sleep", "No target set");
         }
         
         // Compare water intake
         if (goal.getTargetWaterIntake() != null) {
             double waterDiff = latest.getWaterIntake() - goal.getTargetWaterIntake();
-            progress.append("Water Intake:\n");
-            progress.append(String.format("  Current: %.2f liters\n", latest.getWaterIntake()));
-            progress.append(String.format("  Target: %.2f liters\n", goal.getTargetWaterIntake()));
+            out.beginSection("Water Intake");
+            out.value("Current", latest.getWaterIntake(), 2, " liters");
+            out.value("Target", goal.getTargetWaterIntake(), 2, " liters");
             
             if (waterDiff < 0) {
-                progress.append(String.format("  Status: %.2f liters below target\n\n", Math.abs(waterDiff)));
+                out.value("Status", Math.abs(waterDiff), 2, " liters below target");
             } else if (waterDiff > 0) {
-                progress.append(String.format("  Status: %.2f liters above target\n\n", Math.abs(waterDiff)));
+                out.value("Status", Math.abs(waterDiff), 2, " liters above target");
             } else {
-                progress.append("  Status: Target achieved!\n\n");
+                out.value("Status", "Target achieved!");
             }
+            out.endSection();
         } else {
-            progress.append("Water Intake: No target set\n\n");
+            out.value("Water Intake", "No target set");
         }
         
         // Overall status
         boolean allGoalsMet = goal.isGoalMet(latest);
-        progress.append("Overall Status: " + (allGoalsMet ? "All targets achieved!" : "Some targets not yet achieved"));
-        
-        return progress.toString();
+        out.value("Overall Status", allGoalsMet ? "All targets achieved!" : "Some targets not yet achieved");
+    }
+
+    // Summarise which days of the whole history met the goal active on them
+    public String compareHistoryWithGoals(GoalTimeline timeline) {
+        return ReportWriter.toText(out -> writeGoalHistory(timeline, out));
+    }
+
+    // Write the streaks and monthly attainment of the goal over the whole history
+    public void writeGoalHistory(GoalTimeline timeline, ReportWriter out) throws IOException {
+        if (timeline == null || timeline.getLastDate() == null) {
+            out.note("No data available for comparison.");
+            return;
+        }
+
+        int daysTracked = timeline.getDaysTracked();
+        int daysMet = timeline.getDaysMet();
+        out.beginReport("Goal History (to " + timeline.getLastDate() + ")");
+        out.share("Targets Achieved", daysMet, 0, " days", daysMet * 100.0 / daysTracked,
+                "of " + daysTracked + " tracked");
+        out.value("Current Streak", timeline.getCurrentStreak(), " days");
+        out.value("Longest Streak", timeline.getLongestStreak(), " days");
+        out.value("Goals Set", timeline.getGoalHistory().size(), "");
+
+        out.beginSection("Monthly Attainment");
+        for (Map.Entry<YearMonth, Double> month : timeline.getMonthlyAttainment().entrySet()) {
+            out.value(month.getKey().toString(), month.getValue(), 1, "%");
+        }
+        out.endSection();
     }
-}
\ No newline at end of file
+}
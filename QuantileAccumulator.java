@@ -0,0 +1,190 @@
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToDoubleFunction;
+
+// Approximate quantiles of one numeric field in bounded memory, as a KLL sketch. Values are kept
+// in levels; a level that reaches its capacity is sorted and every other value (from a random
+// start) moves up a level, where each one stands for twice as many values. Capacities shrink
+// geometrically towards the lower levels, so a sketch holds O(K) values however many it has seen,
+// and the rank error stays around 1% at K = 200. Up to K values the sketch is exact.
+public class QuantileAccumulator<T> implements Accumulator<T> {
+    // Capacity of the top level; sets the accuracy
+    private static final int K = 200;
+    private static final double SHRINK = 2.0 / 3.0;
+
+    private final ToDoubleFunction<T> field;
+
+    // Values of each level; a value at level h stands for 2^h of the input
+    private double[][] levels = {new double[4]};
+    private int[] sizes = new int[1];
+    private long count;
+    private int retained;
+    private int maxRetained = capacity(0, 1);
+
+    public QuantileAccumulator(ToDoubleFunction<T> field) {
+        this.field = field;
+    }
+
+    public void add(T record) {
+        append(0, field.applyAsDouble(record));
+        count++;
+        if (++retained >= maxRetained) {
+            compress();
+        }
+    }
+
+    public void merge(Accumulator<T> other) {
+        QuantileAccumulator<T> that = (QuantileAccumulator<T>) other;
+        while (levels.length < that.levels.length) {
+            grow();
+        }
+        for (int h = 0; h < that.levels.length; h++) {
+            for (int i = 0; i < that.sizes[h]; i++) {
+                append(h, that.levels[h][i]);
+            }
+        }
+        count += that.count;
+        retained += that.retained;
+        while (retained >= maxRetained) {
+            compress();
+        }
+    }
+
+    public QuantileAccumulator<T> emptyCopy() {
+        return new QuantileAccumulator<>(field);
+    }
+
+    // True if the record's value is still held exactly, so remove can take it back out
+    public boolean canRemove(T record) {
+        return indexOf(field.applyAsDouble(record)) >= 0;
+    }
+
+    // Take a previously added record back out; returns false, changing nothing, once its value
+    // has been compacted into a higher level
+    public boolean remove(T record) {
+        int i = indexOf(field.applyAsDouble(record));
+        if (i < 0) {
+            return false;
+        }
+        sizes[0]--;
+        levels[0][i] = levels[0][sizes[0]];
+        count--;
+        retained--;
+        return true;
+    }
+
+    // Smallest value v such that at least a fraction q of all values are at most v
+    public double getQuantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int n = 0;
+        for (int h = 0; h < levels.length; h++) {
+            double[] sorted = Arrays.copyOf(levels[h], sizes[h]);
+            Arrays.sort(sorted);
+            // Merge this level into the sorted run gathered so far
+            double[] mergedValues = new double[n + sorted.length];
+            long[] mergedWeights = new long[n + sorted.length];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < n || j < sorted.length) {
+                if (j == sorted.length || (i < n && values[i] <= sorted[j])) {
+                    mergedValues[k] = values[i];
+                    mergedWeights[k++] = weights[i++];
+                } else {
+                    mergedValues[k] = sorted[j++];
+                    mergedWeights[k++] = 1L << h;
+                }
+            }
+            values = mergedValues;
+            weights = mergedWeights;
+            n = k;
+        }
+
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            total += weights[i];
+        }
+        double target = q * total;
+        long seen = 0;
+        for (int i = 0; i < n; i++) {
+            seen += weights[i];
+            if (seen >= target) {
+                return values[i];
+            }
+        }
+        return values[n - 1];
+    }
+
+    public double getMedian() {
+        return getQuantile(0.5);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    private int indexOf(double value) {
+        for (int i = 0; i < sizes[0]; i++) {
+            if (levels[0][i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void append(int h, double value) {
+        if (sizes[h] == levels[h].length) {
+            levels[h] = Arrays.copyOf(levels[h], sizes[h] * 2);
+        }
+        levels[h][sizes[h]++] = value;
+    }
+
+    // Compact the lowest level that is at capacity into the one above
+    private void compress() {
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] >= capacity(h, levels.length)) {
+                if (h + 1 == levels.length) {
+                    grow();
+                }
+                compact(h);
+                return;
+            }
+        }
+    }
+
+    private void compact(int h) {
+        double[] level = levels[h];
+        // With an odd count the last value stays behind
+        int pairs = sizes[h] / 2;
+        double leftover = level[sizes[h] - 1];
+        boolean odd = sizes[h] % 2 == 1;
+        Arrays.sort(level, 0, pairs * 2);
+        int offset = ThreadLocalRandom.current().nextInt(2);
+        for (int i = 0; i < pairs; i++) {
+            append(h + 1, level[2 * i + offset]);
+        }
+        sizes[h] = 0;
+        if (odd) {
+            append(h, leftover);
+        }
+        retained -= pairs;
+    }
+
+    private void grow() {
+        levels = Arrays.copyOf(levels, levels.length + 1);
+        levels[levels.length - 1] = new double[4];
+        sizes = Arrays.copyOf(sizes, sizes.length + 1);
+        maxRetained = 0;
+        for (int h = 0; h < levels.length; h++) {
+            maxRetained += capacity(h, levels.length);
+        }
+    }
+
+    private static int capacity(int h, int height) {
+        return (int) Math.ceil(Math.pow(SHRINK, height - h - 1) * K) + 1;
+    }
+}
@@ -0,0 +1,175 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+
+// Prefix sums and sparse tables over the per-day rollups, laid out by epoch day from the first
+// day with records to the last. The totals of any date range then take a fixed number of array
+// reads however long the range is: counts, sums and sums of squares are the difference of two
+// prefix entries, and min and max combine two overlapping power-of-two windows. A change to the
+// last day, or a new later day, only touches the entries that end at or after it, so appends
+// extend the index in place; the arrays grow by doubling.
+public class RangeIndex {
+    private static final Rollup.Metric[] METRICS = Rollup.Metric.values();
+
+    // Epoch day of slot 0
+    private long firstDay;
+    private int dayCount;
+    // Slots the arrays have room for
+    private int capacity;
+
+    // Prefix arrays: entry i covers the days in slots [0, i)
+    private long[] counts;
+    private double[][] sums;
+    private double[][] squares;
+    // Indexed by ExerciseDictionary id; null for exercises never done
+    private int[][] exerciseCounts = new int[0][];
+
+    // Sparse tables per metric: [level][i] covers the days in slots [i, i + 2^level)
+    private double[][][] mins;
+    private double[][][] maxes;
+
+    public RangeIndex(SortedMap<LocalDate, Rollup> days) {
+        int span = days.isEmpty() ? 0 : (int) (days.lastKey().toEpochDay() - days.firstKey().toEpochDay() + 1);
+        allocate(Math.max(span, 1));
+        for (Map.Entry<LocalDate, Rollup> day : days.entrySet()) {
+            extend(day.getKey(), day.getValue());
+        }
+    }
+
+    // Set the totals of a day at or after the last day indexed, which become the last day.
+    // Returns false, changing nothing, for an earlier day.
+    public boolean extend(LocalDate date, Rollup rollup) {
+        if (dayCount == 0) {
+            firstDay = date.toEpochDay();
+        }
+        long offset = date.toEpochDay() - firstDay;
+        if (offset < dayCount - 1 || offset < 0) {
+            return false;
+        }
+        int slot = (int) offset;
+        // First slot whose totals change; every entry ending before it stays as it is
+        int changed = Math.min(slot, dayCount);
+        if (slot >= capacity) {
+            allocate(Math.max(slot + 1, capacity * 2));
+        }
+
+        IdFrequencyAccumulator<HealthRecord> exercises = rollup.getExercises();
+        if (exercises.getIdLimit() > exerciseCounts.length) {
+            exerciseCounts = Arrays.copyOf(exerciseCounts, exercises.getIdLimit());
+        }
+        for (int id = 0; id < exercises.getIdLimit(); id++) {
+            if (exercises.getCount(id) > 0 && exerciseCounts[id] == null) {
+                exerciseCounts[id] = new int[capacity + 1];
+            }
+        }
+
+        // Days skipped over have no records
+        for (int i = changed; i <= slot; i++) {
+            boolean last = i == slot;
+            counts[i + 1] = counts[i] + (last ? rollup.getCount() : 0);
+            for (Rollup.Metric metric : METRICS) {
+                int m = metric.ordinal();
+                sums[m][i + 1] = sums[m][i] + (last ? rollup.getMoments(metric).getSum() : 0);
+                squares[m][i + 1] = squares[m][i] + (last ? rollup.getMoments(metric).getSumOfSquares() : 0);
+                mins[m][0][i] = last ? rollup.getRange(metric).getMin() : Double.POSITIVE_INFINITY;
+                maxes[m][0][i] = last ? rollup.getRange(metric).getMax() : Double.NEGATIVE_INFINITY;
+            }
+            for (int id = 0; id < exerciseCounts.length; id++) {
+                int[] prefix = exerciseCounts[id];
+                if (prefix != null) {
+                    prefix[i + 1] = prefix[i] + (last ? (int) exercises.getCount(id) : 0);
+                }
+            }
+        }
+        dayCount = slot + 1;
+
+        int levels = 32 - Integer.numberOfLeadingZeros(dayCount);
+        for (int m = 0; m < METRICS.length; m++) {
+            for (int level = 1; level < levels; level++) {
+                int half = 1 << (level - 1);
+                int width = dayCount - (1 << level) + 1;
+                double[] lowerMins = mins[m][level - 1];
+                double[] lowerMaxes = maxes[m][level - 1];
+                double[] levelMins = mins[m][level];
+                double[] levelMaxes = maxes[m][level];
+                for (int i = Math.max(changed - (1 << level) + 1, 0); i < width; i++) {
+                    levelMins[i] = Math.min(lowerMins[i], lowerMins[i + half]);
+                    levelMaxes[i] = Math.max(lowerMaxes[i], lowerMaxes[i + half]);
+                }
+            }
+        }
+        return true;
+    }
+
+    // Rollup of every record dated within [from, to]
+    public Rollup between(LocalDate from, LocalDate to) {
+        Rollup rollup = new Rollup();
+        // Clip to the days the index covers
+        long low = Math.max(from.toEpochDay() - firstDay, 0);
+        long high = Math.min(to.toEpochDay() - firstDay, dayCount - 1);
+        if (low > high) {
+            return rollup;
+        }
+        int start = (int) low;
+        int end = (int) high + 1;
+
+        long count = counts[end] - counts[start];
+        if (count == 0) {
+            return rollup;
+        }
+        rollup.setCount(count);
+
+        int level = 31 - Integer.numberOfLeadingZeros(end - start);
+        int second = end - (1 << level);
+        for (Rollup.Metric metric : METRICS) {
+            int m = metric.ordinal();
+            rollup.getMoments(metric).set(count, sums[m][end] - sums[m][start], squares[m][end] - squares[m][start]);
+            rollup.getRange(metric).set(Math.min(mins[m][level][start], mins[m][level][second]),
+                    Math.max(maxes[m][level][start], maxes[m][level][second]));
+        }
+        for (int id = 0; id < exerciseCounts.length; id++) {
+            if (exerciseCounts[id] != null) {
+                int times = exerciseCounts[id][end] - exerciseCounts[id][start];
+                if (times > 0) {
+                    rollup.getExercises().set(id, times);
+                }
+            }
+        }
+        return rollup;
+    }
+
+    // Make room for the given number of slots, keeping what is indexed so far
+    private void allocate(int slots) {
+        int levels = 32 - Integer.numberOfLeadingZeros(slots);
+        if (counts == null) {
+            counts = new long[slots + 1];
+            sums = new double[METRICS.length][slots + 1];
+            squares = new double[METRICS.length][slots + 1];
+            mins = new double[METRICS.length][levels][slots];
+            maxes = new double[METRICS.length][levels][slots];
+        } else {
+            counts = Arrays.copyOf(counts, slots + 1);
+            for (int m = 0; m < METRICS.length; m++) {
+                sums[m] = Arrays.copyOf(sums[m], slots + 1);
+                squares[m] = Arrays.copyOf(squares[m], slots + 1);
+                mins[m] = grow(mins[m], levels, slots);
+                maxes[m] = grow(maxes[m], levels, slots);
+            }
+            for (int id = 0; id < exerciseCounts.length; id++) {
+                if (exerciseCounts[id] != null) {
+                    exerciseCounts[id] = Arrays.copyOf(exerciseCounts[id], slots + 1);
+                }
+            }
+        }
+        capacity = slots;
+    }
+
+    private static double[][] grow(double[][] table, int levels, int slots) {
+        double[][] grown = Arrays.copyOf(table, levels);
+        for (int level = 0; level < levels; level++) {
+            grown[level] = level < table.length ? Arrays.copyOf(table[level], slots) : new double[slots];
+        }
+        return grown;
+    }
+}
@@ -0,0 +1,222 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+// Reads record files in one go and hands each line's bytes to RecordParser, without building a
+// String per line. The file is not mapped: every file read here may be renamed or replaced
+// straight after, which a lingering mapping would block on some platforms.
+// Lines written by SegmentStore carry the record's id as an "@id," prefix, and its logs may hold
+// "-id" tombstone lines; plain lines from older files load with id 0.
+public class RecordFileLoader {
+    private static final String LOG_SUFFIX = ".log";
+
+    private final File file;
+    private final byte[] buffer;
+    private final int limit;
+    private int pos;
+
+    private RecordFileLoader(File file, byte[] buffer) {
+        this.file = file;
+        this.buffer = buffer;
+        this.limit = buffer.length;
+        this.pos = 0;
+    }
+
+    // Append every health record in the file to the given list
+    public static void loadHealthRecords(File file, List<HealthRecord> records) throws IOException {
+        loadHealthRecords(file, 0, Long.MAX_VALUE, records, id -> { });
+    }
+
+    // Append the health records in the byte span [start, end) of the file; start must be a line start.
+    // Each tombstone is passed to deletions when it is reached, after the records that precede it.
+    public static void loadHealthRecords(File file, long start, long end, List<HealthRecord> records,
+                                         LongConsumer deletions) throws IOException {
+        RecordFileLoader loader = open(file, start, end);
+        if (loader == null) {
+            return;
+        }
+        while (loader.nextLine()) {
+            if (loader.atTornTail()) {
+                loader.reportTornTail();
+                return;
+            }
+            int lineStart = loader.pos;
+            try {
+                if (loader.atTombstone()) {
+                    loader.parseTombstone(deletions);
+                    continue;
+                }
+                long id = loader.parseId();
+                int recordStart = loader.pos;
+                HealthRecord record = RecordParser.parseHealthRecord(loader.buffer, recordStart, loader.skipLine());
+                record.setId(id);
+                records.add(record);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid record format: " + loader.lineAt(lineStart));
+            }
+        }
+    }
+
+    // Append every mood record in the file to the given list
+    public static void loadMoodRecords(File file, List<MoodRecord> moodRecords) throws IOException {
+        loadMoodRecords(file, 0, Long.MAX_VALUE, moodRecords, id -> { });
+    }
+
+    // Append the mood records in the byte span [start, end) of the file; start must be a line start.
+    // Each tombstone is passed to deletions when it is reached, after the records that precede it.
+    public static void loadMoodRecords(File file, long start, long end, List<MoodRecord> moodRecords,
+                                       LongConsumer deletions) throws IOException {
+        RecordFileLoader loader = open(file, start, end);
+        if (loader == null) {
+            return;
+        }
+        while (loader.nextLine()) {
+            if (loader.atTornTail()) {
+                loader.reportTornTail();
+                return;
+            }
+            int lineStart = loader.pos;
+            try {
+                if (loader.atTombstone()) {
+                    loader.parseTombstone(deletions);
+                    continue;
+                }
+                long id = loader.parseId();
+                int recordStart = loader.pos;
+                MoodRecord record = RecordParser.parseMoodRecord(loader.buffer, recordStart, loader.skipLine());
+                record.setId(id);
+                moodRecords.add(record);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid mood record format: " + loader.lineAt(lineStart));
+            }
+        }
+    }
+
+    // Read part of the file, or return null if there is nothing to read
+    private static RecordFileLoader open(File file, long start, long end) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = Math.min(end, channel.size()) - start;
+            if (length <= 0) {
+                return null;
+            }
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("File too large to load: " + file);
+            }
+            ByteBuffer bytes = ByteBuffer.allocate((int) length);
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, start + bytes.position()) < 0) {
+                    break;
+                }
+            }
+            return new RecordFileLoader(file, bytes.position() == bytes.capacity()
+                    ? bytes.array() : Arrays.copyOf(bytes.array(), bytes.position()));
+        }
+    }
+
+    // Skip blank lines; returns false once the end of the file is reached
+    private boolean nextLine() {
+        while (pos < limit) {
+            byte b = buffer[pos];
+            if (b != '\n' && b != '\r' && b != ' ' && b != '\t') {
+                return true;
+            }
+            pos++;
+        }
+        return false;
+    }
+    
+    private boolean atTombstone() {
+        return buffer[pos] == '-';
+    }
+    
+    // Format: -id
+    private void parseTombstone(LongConsumer deletions) {
+        pos++;
+        long id = parseLong();
+        if (buffer[pos] != '\n' && buffer[pos] != '\r') {
+            throw new IllegalArgumentException("Unexpected data after tombstone at offset " + pos);
+        }
+        deletions.accept(id);
+    }
+    
+    // Optional "@id," prefix; 0 if the line has none
+    private long parseId() {
+        if (buffer[pos] != '@') {
+            return 0;
+        }
+        pos++;
+        long id = parseLong();
+        expect(',');
+        return id;
+    }
+
+    private long parseLong() {
+        int start = pos;
+        long value = 0;
+        while (pos < limit) {
+            int digit = buffer[pos] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+            pos++;
+        }
+        if (pos == start || pos - start > 18) {
+            throw new NumberFormatException("Expected an id at offset " + start);
+        }
+        return value;
+    }
+
+    private void expect(char c) {
+        if (pos >= limit || buffer[pos] != c) {
+            throw new IllegalArgumentException("Expected '" + c + "' at offset " + pos);
+        }
+        pos++;
+    }
+
+    // Offset of the end of the current line (excluding any line terminator)
+    private int lineEnd() {
+        int end = pos;
+        while (end < limit && buffer[end] != '\n' && buffer[end] != '\r') {
+            end++;
+        }
+        return end;
+    }
+
+    // Move to the end of the current line and return it; nextLine() skips the terminator
+    private int skipLine() {
+        pos = lineEnd();
+        return pos;
+    }
+
+    private String decode(int start, int end) {
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    // Appends to a log write every line with its terminator, so an unterminated last line of a log
+    // is the remains of an append cut short by a crash, even if what is left of it still parses.
+    // Base, segment and legacy files may end without one and are read to the end.
+    private boolean atTornTail() {
+        return file.getName().endsWith(LOG_SUFFIX) && lineEnd() == limit;
+    }
+
+    private void reportTornTail() {
+        System.err.println("Ignoring incomplete last line of " + file + ": " + lineAt(pos));
+    }
+
+    // Decode the line starting at the given offset, for error messages
+    private String lineAt(int start) {
+        pos = start;
+        return decode(start, skipLine());
+    }
+}
@@ -0,0 +1,326 @@
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Single-pass parser for the comma-separated record lines, working on their UTF-8 bytes so
+// RecordFileLoader can hand it lines straight from a file. Dates and numbers are decoded in
+// place, and repeated tokens (exercises, moods, meal types) share one String per thread.
+public class RecordParser {
+    private static final ThreadLocal<RecordParser> PARSERS = ThreadLocal.withInitial(RecordParser::new);
+
+    // Powers of ten that are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final String COMMA_ESCAPE = "[comma]";
+    private static final String COLON_ESCAPE = "[colon]";
+
+    // Open-addressed token table; once a probe run is full, tokens are simply not shared
+    private static final int TOKEN_TABLE_SIZE = 1024;
+    private static final int MAX_PROBES = 8;
+
+    private final String[] tokens = new String[TOKEN_TABLE_SIZE];
+    // UTF-8 bytes of each token, for matching without decoding
+    private final byte[][] tokenBytes = new byte[TOKEN_TABLE_SIZE][];
+
+    private byte[] line;
+    private int pos;
+    private int limit;
+
+    private RecordParser() {
+    }
+
+    // Format: date,weight,sleepHours,waterIntake,exercises
+    public static HealthRecord parseHealthRecord(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        try {
+            return parseHealthRecord(bytes, 0, bytes.length);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid record format: " + line, e);
+        }
+    }
+
+    // Format: date,moodRating,energyLevel,notes
+    public static MoodRecord parseMoodRecord(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        try {
+            return parseMoodRecord(bytes, 0, bytes.length);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid mood record format: " + line, e);
+        }
+    }
+
+    // Format: date,mealType,foodName,calories,protein,carbs,fat,fiber[,name:amount|...]
+    public static NutritionRecord parseNutritionRecord(String line) {
+        RecordParser parser = PARSERS.get();
+        try {
+            return parser.nutritionRecord(line.getBytes(StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid nutrition record format: " + line, e);
+        }
+    }
+
+    // Parse the health record line held in bytes [start, end), without its terminator
+    static HealthRecord parseHealthRecord(byte[] bytes, int start, int end) {
+        return PARSERS.get().healthRecord(bytes, start, end);
+    }
+
+    // Parse the mood record line held in bytes [start, end), without its terminator
+    static MoodRecord parseMoodRecord(byte[] bytes, int start, int end) {
+        return PARSERS.get().moodRecord(bytes, start, end);
+    }
+
+    private HealthRecord healthRecord(byte[] bytes, int start, int end) {
+        reset(bytes, start, end);
+        LocalDate date = parseDate(nextField());
+        double weight = parseDouble(nextField());
+        int sleepHours = parseInt(nextField());
+        double waterIntake = parseDouble(nextField());
+
+        // Handle exercises (may be empty or missing); like String.split, trailing empty entries are dropped
+        List<String> exercises = new ArrayList<>();
+        if (pos <= limit) {
+            int fieldEnd = nextField();
+            if (!isBlank(pos, fieldEnd)) {
+                int from = pos;
+                while (from <= fieldEnd) {
+                    int to = indexOf('|', from, fieldEnd);
+                    exercises.add(token(from, to));
+                    from = to + 1;
+                }
+                while (!exercises.isEmpty() && exercises.get(exercises.size() - 1).isEmpty()) {
+                    exercises.remove(exercises.size() - 1);
+                }
+            }
+        }
+
+        return new HealthRecord(date, weight, sleepHours, waterIntake, exercises);
+    }
+
+    private MoodRecord moodRecord(byte[] bytes, int start, int end) {
+        reset(bytes, start, end);
+        LocalDate date = parseDate(nextField());
+        int ratingEnd = nextField();
+        String moodRating = token(pos, ratingEnd);
+        advance(ratingEnd);
+        int energyLevel = parseInt(nextField());
+        if (pos > limit) {
+            throw new IllegalArgumentException("Missing notes");
+        }
+        // Notes are the rest of the line, commas included
+        String notes = unescape(pos, limit, COMMA_ESCAPE, ",", false);
+
+        return new MoodRecord(date, moodRating, energyLevel, notes);
+    }
+
+    private NutritionRecord nutritionRecord(byte[] bytes) {
+        reset(bytes, 0, bytes.length);
+        LocalDate date = parseDate(nextField());
+        int mealTypeEnd = nextField();
+        String mealType = token(pos, mealTypeEnd);
+        advance(mealTypeEnd);
+        int foodNameEnd = nextField();
+        String foodName = unescape(pos, foodNameEnd, COMMA_ESCAPE, ",", false);
+        advance(foodNameEnd);
+        double calories = parseDouble(nextField());
+        double protein = parseDouble(nextField());
+        double carbs = parseDouble(nextField());
+        double fat = parseDouble(nextField());
+        double fiber = parseDouble(nextField());
+
+        NutritionRecord record = new NutritionRecord(date, mealType, foodName, calories, protein, carbs, fat, fiber);
+
+        // Parse micronutrients if present; entries that aren't exactly name:amount are skipped
+        if (pos <= limit) {
+            int fieldEnd = nextField();
+            int from = pos;
+            while (from < fieldEnd) {
+                int to = indexOf('|', from, fieldEnd);
+                addMicronutrient(record, from, to);
+                from = to + 1;
+            }
+        }
+
+        return record;
+    }
+
+    private void addMicronutrient(NutritionRecord record, int start, int end) {
+        // Trailing colons would be dropped by String.split, so ignore them too
+        while (end > start && line[end - 1] == ':') {
+            end--;
+        }
+        int colon = indexOf(':', start, end);
+        if (colon == end || indexOf(':', colon + 1, end) != end) {
+            return;
+        }
+        String name = unescape(start, colon, COLON_ESCAPE, ":", true);
+        pos = colon + 1;
+        record.addMicronutrient(name, parseDouble(end));
+    }
+
+    private void reset(byte[] bytes, int start, int end) {
+        line = bytes;
+        pos = start;
+        limit = end;
+    }
+
+    // End of the field starting at pos; the parse* methods then step over its comma
+    private int nextField() {
+        if (pos > limit) {
+            throw new IllegalArgumentException("Missing field");
+        }
+        return indexOf(',', pos, limit);
+    }
+
+    private void advance(int fieldEnd) {
+        pos = fieldEnd + 1;
+    }
+
+    // Parse an ISO yyyy-MM-dd date, falling back to LocalDate.parse for anything else
+    private LocalDate parseDate(int end) {
+        int start = pos;
+        advance(end);
+        if (end - start == 10 && line[start + 4] == '-' && line[start + 7] == '-') {
+            int year = digits(start, start + 4);
+            int month = digits(start + 5, start + 7);
+            int day = digits(start + 8, end);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        return LocalDate.parse(decode(start, end));
+    }
+
+    private int parseInt(int end) {
+        int start = pos;
+        advance(end);
+        boolean negative = start < end && line[start] == '-';
+        int first = negative ? start + 1 : start;
+        // Nine digits always fit in an int
+        if (end > first && end - first <= 9) {
+            int value = digits(first, end);
+            if (value >= 0) {
+                return negative ? -value : value;
+            }
+        }
+        return Integer.parseInt(decode(start, end));
+    }
+
+    // Parse plain decimals directly; anything unusual goes through Double.parseDouble
+    private double parseDouble(int end) {
+        int start = pos;
+        advance(end);
+        int i = start;
+        boolean negative = i < end && line[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean inFraction = false;
+        for (; i < end; i++) {
+            byte b = line[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (inFraction) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && !inFraction) {
+                inFraction = true;
+            } else {
+                break;
+            }
+        }
+
+        if (i < end || digits == 0 || digits > 15) {
+            return Double.parseDouble(decode(start, end));
+        }
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    // Value of a run of decimal digits, or -1 if it contains anything else
+    private int digits(int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    // Offset of c in [start, end), or end if it does not occur. Bytes of multi-byte UTF-8
+    // characters never match an ASCII delimiter.
+    private int indexOf(char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (line[i] == c) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            // Same rule as String.trim
+            if ((line[i] & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decode(int start, int end) {
+        return new String(line, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    // Text of [start, end) with every escape replaced by its character; free text is never shared
+    private String unescape(int start, int end, String escape, String replacement, boolean shared) {
+        if (indexOf('[', start, end) == end) {
+            return shared ? token(start, end) : decode(start, end);
+        }
+        return decode(start, end).replace(escape, replacement);
+    }
+
+    // Shared String for the text in [start, end); a hit allocates nothing
+    private String token(int start, int end) {
+        int length = end - start;
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + line[i];
+        }
+
+        int slot = (hash ^ (hash >>> 16)) & (TOKEN_TABLE_SIZE - 1);
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            byte[] bytes = tokenBytes[slot];
+            if (bytes == null) {
+                String token = decode(start, end);
+                tokens[slot] = token;
+                tokenBytes[slot] = token.getBytes(StandardCharsets.UTF_8);
+                return token;
+            }
+            if (bytes.length == length && regionMatches(start, bytes)) {
+                return tokens[slot];
+            }
+            slot = (slot + 1) & (TOKEN_TABLE_SIZE - 1);
+        }
+        return decode(start, end);
+    }
+
+    private boolean regionMatches(int start, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (line[start + i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
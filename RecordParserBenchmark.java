@@ -0,0 +1,176 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+// Compares RecordParser against the previous split-based fromFileString implementations.
+// Run with: java RecordParserBenchmark [lines] [rounds]
+public class RecordParserBenchmark {
+    private static final String[] EXERCISES = {"Running", "Cycling", "Swimming", "Yoga", "Walking", "Weights"};
+    private static final String[] MOODS = {"Happy", "Calm", "Tired", "Anxious", "Energetic"};
+    private static final String[] MEAL_TYPES = {"Breakfast", "Lunch", "Dinner", "Snack"};
+
+    // Keeps the JIT from discarding parsed records
+    private static long sink;
+
+    public static void main(String[] args) {
+        int lineCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Random random = new Random(42);
+        List<String> healthLines = new ArrayList<>();
+        List<String> moodLines = new ArrayList<>();
+        List<String> nutritionLines = new ArrayList<>();
+        for (int i = 0; i < lineCount; i++) {
+            LocalDate date = LocalDate.of(2020, 1, 1).plusDays(i % 2000);
+            healthLines.add(healthLine(random, date));
+            moodLines.add(moodLine(random, date));
+            nutritionLines.add(nutritionLine(random, date));
+        }
+
+        verify(healthLines, RecordParserBenchmark::splitHealthRecord, RecordParser::parseHealthRecord,
+                HealthRecord::toFileString);
+        verify(moodLines, RecordParserBenchmark::splitMoodRecord, RecordParser::parseMoodRecord,
+                MoodRecord::toFileString);
+        verify(nutritionLines, RecordParserBenchmark::splitNutritionRecord, RecordParser::parseNutritionRecord,
+                NutritionRecord::toFileString);
+
+        run("HealthRecord", healthLines, rounds, RecordParserBenchmark::splitHealthRecord, RecordParser::parseHealthRecord);
+        run("MoodRecord", moodLines, rounds, RecordParserBenchmark::splitMoodRecord, RecordParser::parseMoodRecord);
+        run("NutritionRecord", nutritionLines, rounds, RecordParserBenchmark::splitNutritionRecord,
+                RecordParser::parseNutritionRecord);
+
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    private static <T> void run(String name, List<String> lines, int rounds,
+                                Function<String, T> split, Function<String, T> scan) {
+        // The first round of each warms up the JIT and is not reported
+        long splitBest = Long.MAX_VALUE;
+        long scanBest = Long.MAX_VALUE;
+        for (int round = 0; round <= rounds; round++) {
+            long splitTime = time(lines, split);
+            long scanTime = time(lines, scan);
+            if (round > 0) {
+                splitBest = Math.min(splitBest, splitTime);
+                scanBest = Math.min(scanBest, scanTime);
+            }
+        }
+        System.out.println(String.format("%-16s split: %6.1f ns/line   scan: %6.1f ns/line   (%.2fx)",
+                name, (double) splitBest / lines.size(), (double) scanBest / lines.size(),
+                (double) splitBest / scanBest));
+    }
+
+    private static <T> long time(List<String> lines, Function<String, T> parser) {
+        long start = System.nanoTime();
+        for (String line : lines) {
+            sink += parser.apply(line).hashCode();
+        }
+        return System.nanoTime() - start;
+    }
+
+    // Both parsers must produce records that write back identically
+    private static <T> void verify(List<String> lines, Function<String, T> split, Function<String, T> scan,
+                                   Function<T, String> format) {
+        for (String line : lines) {
+            String expected = format.apply(split.apply(line));
+            String actual = format.apply(scan.apply(line));
+            if (!expected.equals(actual)) {
+                throw new IllegalStateException("Parsers disagree on \"" + line + "\": " + expected + " vs " + actual);
+            }
+        }
+    }
+
+    private static String healthLine(Random random, LocalDate date) {
+        List<String> exercises = new ArrayList<>();
+        for (int i = random.nextInt(4); i > 0; i--) {
+            exercises.add(EXERCISES[random.nextInt(EXERCISES.length)]);
+        }
+        double weight = 50 + random.nextInt(5000) / 100.0;
+        double water = random.nextInt(50) / 10.0;
+        return new HealthRecord(date, weight, 4 + random.nextInt(6), water, exercises).toFileString();
+    }
+
+    private static String moodLine(Random random, LocalDate date) {
+        String notes = random.nextBoolean() ? "Slept well, long walk" : "Busy day at work";
+        return new MoodRecord(date, MOODS[random.nextInt(MOODS.length)], 1 + random.nextInt(10), notes).toFileString();
+    }
+
+    private static String nutritionLine(Random random, LocalDate date) {
+        NutritionRecord record = new NutritionRecord(date, MEAL_TYPES[random.nextInt(MEAL_TYPES.length)],
+                "Oats, milk and berries", random.nextInt(8000) / 10.0, random.nextInt(500) / 10.0,
+                random.nextInt(900) / 10.0, random.nextInt(400) / 10.0, random.nextInt(150) / 10.0);
+        if (random.nextBoolean()) {
+            record.addMicronutrient("Vitamin C", random.nextInt(1000) / 10.0);
+            record.addMicronutrient("Iron", random.nextInt(200) / 10.0);
+        }
+        return record.toFileString();
+    }
+
+    // The split-based parsers that RecordParser replaced, kept here as the baseline
+
+    private static HealthRecord splitHealthRecord(String line) {
+        String[] parts = line.split(",");
+        if (parts.length < 4) {
+            throw new IllegalArgumentException("Invalid record format: " + line);
+        }
+
+        LocalDate date = LocalDate.parse(parts[0]);
+        double weight = Double.parseDouble(parts[1]);
+        int sleepHours = Integer.parseInt(parts[2]);
+        double waterIntake = Double.parseDouble(parts[3]);
+
+        List<String> exercises = new ArrayList<>();
+        if (parts.length > 4 && parts[4].trim().length() > 0) {
+            exercises = Arrays.asList(parts[4].split("\\|"));
+        }
+
+        return new HealthRecord(date, weight, sleepHours, waterIntake, exercises);
+    }
+
+    private static MoodRecord splitMoodRecord(String line) {
+        String[] parts = line.split(",", 4);
+        if (parts.length < 4) {
+            throw new IllegalArgumentException("Invalid mood record format: " + line);
+        }
+
+        LocalDate date = LocalDate.parse(parts[0]);
+        String moodRating = parts[1];
+        int energyLevel = Integer.parseInt(parts[2]);
+        String notes = parts[3].replace("[comma]", ",");
+
+        return new MoodRecord(date, moodRating, energyLevel, notes);
+    }
+
+    private static NutritionRecord splitNutritionRecord(String line) {
+        String[] parts = line.split(",");
+        if (parts.length < 8) {
+            throw new IllegalArgumentException("Invalid nutrition record format: " + line);
+        }
+
+        LocalDate date = LocalDate.parse(parts[0]);
+        String mealType = parts[1];
+        String foodName = parts[2].replace("[comma]", ",");
+        double calories = Double.parseDouble(parts[3]);
+        double protein = Double.parseDouble(parts[4]);
+        double carbs = Double.parseDouble(parts[5]);
+        double fat = Double.parseDouble(parts[6]);
+        double fiber = Double.parseDouble(parts[7]);
+
+        NutritionRecord record = new NutritionRecord(date, mealType, foodName, calories, protein, carbs, fat, fiber);
+
+        if (parts.length > 8) {
+            for (String micronutrient : parts[8].split("\\|")) {
+                String[] nutrientParts = micronutrient.split(":");
+                if (nutrientParts.length == 2) {
+                    String name = nutrientParts[0].replace("[colon]", ":");
+                    record.addMicronutrient(name, Double.parseDouble(nutrientParts[1]));
+                }
+            }
+        }
+
+        return record;
+    }
+}
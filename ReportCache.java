@@ -0,0 +1,99 @@
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+// Caches generated reports by report type, date range and the data version of the profile they
+// were built from. Any change to the profile bumps its version, so entries are never stale; old
+// ones just stop being asked for and fall out as the least recently used.
+public class ReportCache {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final int capacity;
+    private final LinkedHashMap<Key, String> reports;
+    private long hits;
+    private long misses;
+
+    public ReportCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ReportCache(int capacity) {
+        this.capacity = capacity;
+        // Access order, so the eldest entry is the least recently used
+        this.reports = new LinkedHashMap<Key, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+                return size() > ReportCache.this.capacity;
+            }
+        };
+    }
+
+    // The cached report for the key, or the one the generator builds, which is then cached.
+    // Either date may be null for reports that don't cover a range.
+    public synchronized String get(String type, LocalDate from, LocalDate to, long version, Supplier<String> generator) {
+        Key key = new Key(type, from, to, version);
+        String report = reports.get(key);
+        if (report != null) {
+            hits++;
+            return report;
+        }
+        misses++;
+        report = generator.get();
+        reports.put(key, report);
+        return report;
+    }
+
+    public synchronized void clear() {
+        reports.clear();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return reports.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return String.format("Report cache: %d/%d entries, %d hits, %d misses (%.1f%% hit rate)",
+                reports.size(), capacity, hits, misses, lookups == 0 ? 0.0 : 100.0 * hits / lookups);
+    }
+
+    private static class Key {
+        private final String type;
+        private final LocalDate from;
+        private final LocalDate to;
+        private final long version;
+
+        Key(String type, LocalDate from, LocalDate to, long version) {
+            this.type = type;
+            this.from = from;
+            this.to = to;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return version == other.version && type.equals(other.type)
+                    && Objects.equals(from, other.from) && Objects.equals(to, other.to);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, from, to, version);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Streams reports to an Appendable (a StringBuilder, a Writer, System.out) as they are generated.
+// A report is a title followed by values and notes, some of them grouped into titled sections;
+// subclasses render that as text, CSV or JSON. Numbers are written digit by digit instead of
+// through String.format, so generating large exports allocates next to nothing per value.
+public abstract class ReportWriter {
+    // Output formats a report can be written in
+    public enum Format {
+        TEXT, CSV, JSON;
+
+        public ReportWriter open(Appendable out) {
+            switch (this) {
+                case CSV:
+                    return new CsvReportWriter(out);
+                case JSON:
+                    return new JsonReportWriter(out);
+                default:
+                    return new TextReportWriter(out);
+            }
+        }
+    }
+
+    // Writes one or more reports
+    public interface Body {
+        void write(ReportWriter out) throws IOException;
+    }
+
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+
+    protected final Appendable out;
+
+    protected ReportWriter(Appendable out) {
+        this.out = out;
+    }
+
+    // Render reports as text into a String
+    public static String toText(Body body) {
+        StringBuilder text = new StringBuilder();
+        try {
+            ReportWriter writer = new TextReportWriter(text);
+            body.write(writer);
+            writer.finish();
+        } catch (IOException e) {
+            // A StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return text.toString();
+    }
+
+    // Start a report; everything up to the next beginReport or finish belongs to it
+    public abstract void beginReport(String title) throws IOException;
+
+    // Group the following values and notes under a heading, until endSection
+    public abstract void beginSection(String title) throws IOException;
+
+    public abstract void endSection() throws IOException;
+
+    // A labelled piece of text, e.g. "Most common mood: Happy"
+    public abstract void value(String label, CharSequence text) throws IOException;
+
+    // A labelled whole number followed by a unit, e.g. "Taken doses: 12". The unit is written as
+    // given after the number, so it carries its own leading space where one is wanted.
+    public abstract void value(String label, long number, String unit) throws IOException;
+
+    // A labelled number rounded half up to the given number of decimals (at most 9), then a unit
+    public abstract void value(String label, double number, int decimals, String unit) throws IOException;
+
+    // A number with the percentage it makes up of some whole, e.g. "Happy: 3 times (42.9%)" or
+    // "Protein: 55.0g (110.0% of recommended)"; the percentage has one decimal
+    public abstract void share(String label, double number, int decimals, String unit, double percent, String of)
+            throws IOException;
+
+    // A free-standing sentence, e.g. an insight or a message that there is nothing to report
+    public abstract void note(String text) throws IOException;
+
+    // Complete the output; nothing may be written afterwards
+    public void finish() throws IOException {
+    }
+
+    // Write a number rounded half up to the given number of decimals, like String.format("%.nf")
+    protected static void appendFixed(Appendable out, double number, int decimals) throws IOException {
+        long scale = POWERS_OF_TEN[decimals];
+        double scaled = Math.abs(number) * scale;
+        if (Double.isNaN(number) || Double.isInfinite(number) || scaled >= 1e15) {
+            out.append(String.format("%." + decimals + "f", number));
+            return;
+        }
+        long units = Math.round(scaled);
+        if (Math.abs(scaled - Math.floor(scaled) - 0.5) < 1e-6) {
+            // Close to a tie the binary product can round the wrong way; String.format rounds the
+            // shortest decimal form of the number, so do the same for these rare cases
+            units = new BigDecimal(Double.toString(Math.abs(number))).movePointRight(decimals)
+                    .setScale(0, RoundingMode.HALF_UP).longValue();
+        }
+        if (number < 0) {
+            out.append('-');
+        }
+        appendLong(out, units / scale);
+        if (decimals > 0) {
+            out.append('.');
+            long fraction = units % scale;
+            for (long digit = scale / 10; digit > 0; digit /= 10) {
+                out.append((char) ('0' + fraction / digit % 10));
+            }
+        }
+    }
+
+    protected static void appendLong(Appendable out, long number) throws IOException {
+        if (number < 0) {
+            if (number == Long.MIN_VALUE) {
+                out.append(Long.toString(number));
+                return;
+            }
+            out.append('-');
+            number = -number;
+        }
+        long digit = 1;
+        while (digit <= number / 10) {
+            digit *= 10;
+        }
+        for (; digit > 0; digit /= 10) {
+            out.append((char) ('0' + number / digit % 10));
+        }
+    }
+}
@@ -0,0 +1,235 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+// Running totals over a set of health records: count, moments, min, max and a quantile sketch of
+// each metric plus how often each exercise was done. Rollups of disjoint sets merge into the
+// rollup of their union.
+public class Rollup implements Accumulator<HealthRecord> {
+    // The numeric fields of a health record that a rollup keeps totals of
+    public enum Metric {
+        WEIGHT("Weight", HealthRecord::getWeight),
+        SLEEP_HOURS("Sleep", HealthRecord::getSleepHours),
+        WATER_INTAKE("Water Intake", HealthRecord::getWaterIntake);
+
+        private final String label;
+        private final ToDoubleFunction<HealthRecord> field;
+
+        Metric(String label, ToDoubleFunction<HealthRecord> field) {
+            this.label = label;
+            this.field = field;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        // This metric's value in a record
+        public double valueOf(HealthRecord record) {
+            return field.applyAsDouble(record);
+        }
+    }
+
+    private static final Metric[] METRICS = Metric.values();
+
+    private final CountAccumulator<HealthRecord> count = new CountAccumulator<>();
+    // Indexed by Metric ordinal
+    private final MomentsAccumulator<HealthRecord>[] moments = newMoments();
+    private final MinMaxAccumulator<HealthRecord>[] ranges = newRanges();
+    private final QuantileAccumulator<HealthRecord>[] quantiles = newQuantiles();
+    private final IdFrequencyAccumulator<HealthRecord> exercises =
+            new IdFrequencyAccumulator<>(HealthRecord::getExerciseIds);
+
+    @SuppressWarnings("unchecked")
+    private static MomentsAccumulator<HealthRecord>[] newMoments() {
+        MomentsAccumulator<HealthRecord>[] moments = (MomentsAccumulator<HealthRecord>[]) new MomentsAccumulator<?>[METRICS.length];
+        for (Metric metric : METRICS) {
+            moments[metric.ordinal()] = new MomentsAccumulator<>(metric.field);
+        }
+        return moments;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MinMaxAccumulator<HealthRecord>[] newRanges() {
+        MinMaxAccumulator<HealthRecord>[] ranges = (MinMaxAccumulator<HealthRecord>[]) new MinMaxAccumulator<?>[METRICS.length];
+        for (Metric metric : METRICS) {
+            ranges[metric.ordinal()] = new MinMaxAccumulator<>(metric.field);
+        }
+        return ranges;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static QuantileAccumulator<HealthRecord>[] newQuantiles() {
+        QuantileAccumulator<HealthRecord>[] quantiles = (QuantileAccumulator<HealthRecord>[]) new QuantileAccumulator<?>[METRICS.length];
+        for (Metric metric : METRICS) {
+            quantiles[metric.ordinal()] = new QuantileAccumulator<>(metric.field);
+        }
+        return quantiles;
+    }
+
+    // Add a single record
+    public void add(HealthRecord record) {
+        count.add(record);
+        for (int i = 0; i < METRICS.length; i++) {
+            moments[i].add(record);
+            ranges[i].add(record);
+            quantiles[i].add(record);
+        }
+        exercises.add(record);
+    }
+
+    // Fold another rollup into this one
+    public void merge(Accumulator<HealthRecord> other) {
+        Rollup that = (Rollup) other;
+        count.merge(that.count);
+        for (int i = 0; i < METRICS.length; i++) {
+            moments[i].merge(that.moments[i]);
+            ranges[i].merge(that.ranges[i]);
+            quantiles[i].merge(that.quantiles[i]);
+        }
+        exercises.merge(that.exercises);
+    }
+
+    // Fold only the quantile sketches of another rollup into this one
+    public void mergeQuantiles(Rollup other) {
+        for (int i = 0; i < METRICS.length; i++) {
+            quantiles[i].merge(other.quantiles[i]);
+        }
+    }
+
+    public Rollup emptyCopy() {
+        return new Rollup();
+    }
+
+    // Take a previously added record back out. Returns false, leaving the rollup unchanged, if the
+    // record holds a min or max, since the next one can't be known without the remaining records,
+    // or if a sketch no longer holds its values exactly.
+    public boolean remove(HealthRecord record) {
+        for (QuantileAccumulator<HealthRecord> sketch : quantiles) {
+            if (!sketch.canRemove(record)) {
+                return false;
+            }
+        }
+        if (count.getCount() > 1) {
+            for (MinMaxAccumulator<HealthRecord> range : ranges) {
+                if (range.isExtreme(record)) {
+                    return false;
+                }
+            }
+        } else if (count.getCount() == 1) {
+            // Back to an empty rollup
+            for (MinMaxAccumulator<HealthRecord> range : ranges) {
+                range.clear();
+            }
+        }
+
+        count.remove(record);
+        for (int i = 0; i < METRICS.length; i++) {
+            moments[i].remove(record);
+            quantiles[i].remove(record);
+        }
+        exercises.remove(record);
+        return true;
+    }
+
+    // Replace the record count; used with getMoments and getRange to fill in totals computed elsewhere
+    public void setCount(long count) {
+        this.count.set(count);
+    }
+
+    public long getCount() {
+        return count.getCount();
+    }
+
+    // Sum, mean and variance of one metric
+    public MomentsAccumulator<HealthRecord> getMoments(Metric metric) {
+        return moments[metric.ordinal()];
+    }
+
+    // Min and max of one metric
+    public MinMaxAccumulator<HealthRecord> getRange(Metric metric) {
+        return ranges[metric.ordinal()];
+    }
+
+    // Approximate quantiles of one metric
+    public QuantileAccumulator<HealthRecord> getQuantiles(Metric metric) {
+        return quantiles[metric.ordinal()];
+    }
+
+    public double getAverageWeight() {
+        return getMoments(Metric.WEIGHT).getMean();
+    }
+
+    public double getMedianWeight() {
+        return getQuantiles(Metric.WEIGHT).getMedian();
+    }
+
+    public double getWeightStandardDeviation() {
+        return getMoments(Metric.WEIGHT).getStandardDeviation();
+    }
+
+    public double getMinWeight() {
+        return getRange(Metric.WEIGHT).getMin();
+    }
+
+    public double getMaxWeight() {
+        return getRange(Metric.WEIGHT).getMax();
+    }
+
+    public double getAverageSleepHours() {
+        return getMoments(Metric.SLEEP_HOURS).getMean();
+    }
+
+    public double getMedianSleepHours() {
+        return getQuantiles(Metric.SLEEP_HOURS).getMedian();
+    }
+
+    public double getSleepHoursStandardDeviation() {
+        return getMoments(Metric.SLEEP_HOURS).getStandardDeviation();
+    }
+
+    public int getMinSleepHours() {
+        return (int) getRange(Metric.SLEEP_HOURS).getMin();
+    }
+
+    public int getMaxSleepHours() {
+        return (int) getRange(Metric.SLEEP_HOURS).getMax();
+    }
+
+    public double getAverageWaterIntake() {
+        return getMoments(Metric.WATER_INTAKE).getMean();
+    }
+
+    public double getMedianWaterIntake() {
+        return getQuantiles(Metric.WATER_INTAKE).getMedian();
+    }
+
+    public double getWaterIntakeStandardDeviation() {
+        return getMoments(Metric.WATER_INTAKE).getStandardDeviation();
+    }
+
+    public double getMinWaterIntake() {
+        return getRange(Metric.WATER_INTAKE).getMin();
+    }
+
+    public double getMaxWaterIntake() {
+        return getRange(Metric.WATER_INTAKE).getMax();
+    }
+
+    // Number of times each exercise was done, by ExerciseDictionary id
+    public IdFrequencyAccumulator<HealthRecord> getExercises() {
+        return exercises;
+    }
+
+    // Number of times each exercise that was done at all was done, by name
+    public Map<String, Long> getExerciseCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        for (int id = 0; id < exercises.getIdLimit(); id++) {
+            long times = exercises.getCount(id);
+            if (times > 0) {
+                counts.put(ExerciseDictionary.nameOf(id), times);
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,130 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+// Sparse date index kept next to a date-sorted text segment (2025-04.idx beside 2025-04.seg).
+// Every STRIDE-th line is listed with its epoch day and byte offset, so a range read can
+// binary-search for the span of the segment that holds the range and parse only that.
+//
+// Layout: segment length (long), segment modification time (long), entry count (int),
+//         then per entry: epochDay (int), byte offset (long)
+public class SegmentIndex {
+    // One entry per this many lines
+    public static final int STRIDE = 64;
+
+    private final int[] days;
+    private final long[] offsets;
+    private final long segmentLength;
+
+    private SegmentIndex(int[] days, long[] offsets, long segmentLength) {
+        this.days = days;
+        this.offsets = offsets;
+        this.segmentLength = segmentLength;
+    }
+
+    // Collects entries while a segment is being written
+    public static class Builder {
+        private int[] days = new int[16];
+        private long[] offsets = new long[16];
+        private int size;
+        private int lines;
+
+        // Note the start of the next line; only every STRIDE-th one becomes an entry
+        public void addLine(LocalDate date, long offset) {
+            if (lines++ % STRIDE != 0) {
+                return;
+            }
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            days[size] = (int) date.toEpochDay();
+            offsets[size] = offset;
+            size++;
+        }
+
+        // Write the index for a segment that has just been put in place
+        public void write(File indexFile, File segment) throws IOException {
+            File temp = new File(indexFile.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeLong(segment.length());
+                out.writeLong(segment.lastModified());
+                out.writeInt(size);
+                for (int i = 0; i < size; i++) {
+                    out.writeInt(days[i]);
+                    out.writeLong(offsets[i]);
+                }
+            }
+            SegmentStore.replaceAtomically(temp, indexFile);
+        }
+    }
+
+    // Read the index for a segment, or return null if it is missing or no longer matches the segment
+    public static SegmentIndex read(File indexFile, File segment) throws IOException {
+        if (!indexFile.exists()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            long length = in.readLong();
+            long modified = in.readLong();
+            // A segment rewritten without its index (e.g. by a crash in between) is not trusted
+            if (length != segment.length() || modified != segment.lastModified()) {
+                return null;
+            }
+            int count = in.readInt();
+            int[] days = new int[count];
+            long[] offsets = new long[count];
+            for (int i = 0; i < count; i++) {
+                days[i] = in.readInt();
+                offsets[i] = in.readLong();
+            }
+            return new SegmentIndex(days, offsets, length);
+        }
+    }
+
+    // Start of the span that holds every line dated on or after the given date
+    public long startOffset(LocalDate from) {
+        // Last entry dated before from; nothing earlier can be in range
+        long day = from.toEpochDay();
+        int low = 0;
+        int high = days.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid] < day) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found < 0 ? 0 : offsets[found];
+    }
+
+    // End of the span that holds every line dated on or before the given date
+    public long endOffset(LocalDate to) {
+        // First entry dated after to; nothing from there on can be in range
+        long day = to.toEpochDay();
+        int low = 0;
+        int high = days.length - 1;
+        int found = days.length;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid] > day) {
+                found = mid;
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return found == days.length ? segmentLength : offsets[found];
+    }
+}
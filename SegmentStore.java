@@ -0,0 +1,599 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+// Stores one kind of record as one segment file per month, e.g. records/2025-04.seg.
+// New records are appended to the segment's log (2025-04.log) and folded into the
+// segment by compaction, which writes it sorted by date along with a sparse date index
+// (2025-04.idx) for text segments. Callers serialise mutations; reads may run concurrently.
+//
+// Every record has a stable id, stored as an "@id," prefix on its line. A log line for an id
+// that is already stored replaces that record, and a "-id" tombstone line deletes it; both are
+// applied in log order and folded away by compaction.
+public class SegmentStore<T> {
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    // Holds the first id not yet reserved
+    private static final String ID_FILE_NAME = "next_id";
+
+    // Ids are reserved on disk this many at a time
+    private static final int ID_BLOCK = 1024;
+
+    private static final LongConsumer NO_DELETIONS = id -> {
+        throw new IllegalArgumentException("Unexpected tombstone for id " + id + " in a segment");
+    };
+
+    // Compact a segment's log into its base file once it holds this many entries
+    private static final int COMPACTION_THRESHOLD = 256;
+
+    // How a record type is written to and read from segment files
+    public interface Codec<T> {
+        LocalDate dateOf(T record);
+
+        long idOf(T record);
+
+        void setId(T record, long id);
+
+        // Line for the record itself, without the id prefix
+        String toLine(T record);
+
+        // Read the lines in the byte span [start, end) of a text file, passing each tombstone
+        // to deletions as it is reached
+        void readText(File file, long start, long end, List<T> records, LongConsumer deletions) throws IOException;
+
+        void readBinary(File file, List<T> records) throws IOException;
+
+        void writeBinary(File file, List<T> records) throws IOException;
+    }
+
+    private final File directory;
+    private final File idFile;
+    private final Codec<T> codec;
+    // New segments use the binary format once the store has been converted to it
+    private final boolean binaryByDefault;
+
+    // Number of entries currently in each segment's log
+    private final Map<YearMonth, Integer> logEntryCounts = new TreeMap<>();
+
+    // Next id to hand out, and the first id not yet reserved on disk; ids handed out past the
+    // reservation are reserved before the next write
+    private long nextId;
+    private long reservedId;
+
+    // Mutations waiting for the next commit; a pending snapshot replaces every segment
+    private List<T> pendingSnapshot;
+    private final Map<YearMonth, List<String>> pendingLines = new TreeMap<>();
+
+    // Guards the files; taken after (never while waiting for) the owner's lock
+    private final Object fileLock = new Object();
+
+    public SegmentStore(File directory, Codec<T> codec) {
+        this.directory = directory;
+        this.idFile = new File(directory, ID_FILE_NAME);
+        this.codec = codec;
+        // A failure here surfaces as an IOException on the first write
+        directory.mkdirs();
+
+        List<YearMonth> months = segmentMonths();
+        binaryByDefault = !months.isEmpty() && isBinary(segmentFile(months.get(months.size() - 1)));
+        for (YearMonth month : logMonths()) {
+            logEntryCounts.put(month, countLines(logFile(month)));
+        }
+
+        try {
+            nextId = readReservedId();
+            if (nextId == 0) {
+                assignMissingIds();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error reading record ids in " + directory + ": " + e.getMessage());
+        }
+        // Never hand out 0, which marks a record without an id
+        nextId = Math.max(nextId, 1);
+        reservedId = nextId;
+    }
+
+    // Line for a stored record: its line prefixed with "@id,"
+    public static String entry(long id, String line) {
+        return "@" + id + "," + line;
+    }
+
+    // Queue a single record for appending to its month's log, giving it an id if it has none
+    public void append(T record) throws IOException {
+        assignId(record);
+        queue(codec.dateOf(record), entry(codec.idOf(record), codec.toLine(record)));
+    }
+
+    // Queue a replacement for a stored record; the new version keeps the previous one's id
+    public void update(T previous, T record) throws IOException {
+        codec.setId(record, codec.idOf(previous));
+        if (!YearMonth.from(codec.dateOf(previous)).equals(YearMonth.from(codec.dateOf(record)))) {
+            // The record moves to another month's segment
+            queue(codec.dateOf(previous), "-" + codec.idOf(previous));
+        }
+        queue(codec.dateOf(record), entry(codec.idOf(record), codec.toLine(record)));
+    }
+
+    // Queue a tombstone for a stored record
+    public void delete(T record) {
+        queue(codec.dateOf(record), "-" + codec.idOf(record));
+    }
+
+    // Queue a full replacement of the stored records, giving ids to any that have none
+    public void saveAll(List<T> records) throws IOException {
+        for (T record : records) {
+            assignId(record);
+        }
+        // The snapshot covers every mutation queued so far
+        pendingSnapshot = new ArrayList<>(records);
+        pendingLines.clear();
+    }
+
+    private void queue(LocalDate date, String line) {
+        pendingLines.computeIfAbsent(YearMonth.from(date), m -> new ArrayList<>()).add(line);
+    }
+
+    // Write all pending mutations; returns true if a log has grown enough to need compaction
+    public boolean commit() throws IOException {
+        synchronized (fileLock) {
+            reserveIds();
+            if (pendingSnapshot != null) {
+                writeAll(pendingSnapshot);
+                pendingSnapshot = null;
+            }
+            for (Map.Entry<YearMonth, List<String>> entry : pendingLines.entrySet()) {
+                appendToLog(entry.getKey(), entry.getValue());
+            }
+            pendingLines.clear();
+        }
+
+        for (int entries : logEntryCounts.values()) {
+            if (entries >= COMPACTION_THRESHOLD) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Load every stored record, oldest segment first
+    public List<T> loadAll() throws IOException {
+        List<T> records = new ArrayList<>();
+        loadAll(records::add);
+        return records;
+    }
+
+    // Hand every stored record to the sink, oldest segment first, holding one segment at a time
+    public void loadAll(Consumer<? super T> sink) throws IOException {
+        synchronized (fileLock) {
+            for (YearMonth month : allMonths()) {
+                List<T> records = new ArrayList<>();
+                readSegment(month, records);
+                records.forEach(sink);
+            }
+        }
+    }
+
+    // Load the records dated within [from, to], opening only the segments that overlap it
+    public List<T> load(LocalDate from, LocalDate to) throws IOException {
+        List<T> records = new ArrayList<>();
+        try (Stream<T> stream = stream(from, to)) {
+            stream.forEach(records::add);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return records;
+    }
+
+    // Stream the records dated within [from, to] in date order. Segments are read lazily, one
+    // at a time, so only a single month is ever held in memory; months only partly in range
+    // read just the indexed span that can hold it. Read errors surface as UncheckedIOException.
+    public Stream<T> stream(LocalDate from, LocalDate to) {
+        YearMonth first = YearMonth.from(from);
+        YearMonth last = YearMonth.from(to);
+        Comparator<T> byDate = Comparator.comparing(codec::dateOf);
+
+        return allMonths().stream()
+                .filter(month -> !month.isBefore(first) && !month.isAfter(last))
+                .flatMap(month -> {
+                    List<T> segment = new ArrayList<>();
+                    try {
+                        synchronized (fileLock) {
+                            if (from.isAfter(month.atDay(1)) || to.isBefore(month.atEndOfMonth())) {
+                                readSegment(month, from, to, segment);
+                            } else {
+                                readSegment(month, segment);
+                            }
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    // Months never overlap, so sorting each one orders the whole stream
+                    segment.sort(byDate);
+                    return segment.stream();
+                })
+                .filter(record -> {
+                    LocalDate date = codec.dateOf(record);
+                    return !date.isBefore(from) && !date.isAfter(to);
+                });
+    }
+
+    // Fold every non-empty log into its segment
+    public void compact() throws IOException {
+        synchronized (fileLock) {
+            for (YearMonth month : new ArrayList<>(logEntryCounts.keySet())) {
+                if (logEntryCounts.get(month) > 0) {
+                    List<T> records = new ArrayList<>();
+                    readSegment(month, records);
+                    writeSegment(month, records);
+                }
+            }
+        }
+    }
+
+    // Replace every segment with the given records, removing months that no longer have any
+    public void writeAll(List<T> records) throws IOException {
+        Map<YearMonth, List<T>> byMonth = new TreeMap<>();
+        for (T record : records) {
+            byMonth.computeIfAbsent(YearMonth.from(codec.dateOf(record)), m -> new ArrayList<>()).add(record);
+        }
+
+        synchronized (fileLock) {
+            for (Map.Entry<YearMonth, List<T>> entry : byMonth.entrySet()) {
+                writeSegment(entry.getKey(), entry.getValue());
+            }
+            for (YearMonth month : allMonths()) {
+                if (!byMonth.containsKey(month)) {
+                    deleteFile(segmentFile(month));
+                    deleteFile(indexFile(month));
+                    clearLog(month);
+                }
+            }
+        }
+    }
+
+    // Segment base files, oldest first
+    public List<File> segmentFiles() {
+        List<File> files = new ArrayList<>();
+        for (YearMonth month : segmentMonths()) {
+            files.add(segmentFile(month));
+        }
+        return files;
+    }
+
+    // Append a month's records, with its log applied, to the given list
+    private void readSegment(YearMonth month, List<T> records) throws IOException {
+        File file = segmentFile(month);
+        List<T> segment = new ArrayList<>();
+        if (BinaryRecordFormat.isBinary(file)) {
+            codec.readBinary(file, segment);
+        } else {
+            codec.readText(file, 0, Long.MAX_VALUE, segment, NO_DELETIONS);
+        }
+        records.addAll(applyLog(month, segment));
+    }
+
+    // Append a month's records that may fall within [from, to], using its index if it has a current one
+    private void readSegment(YearMonth month, LocalDate from, LocalDate to, List<T> records) throws IOException {
+        File file = segmentFile(month);
+        SegmentIndex index = BinaryRecordFormat.isBinary(file) ? null : SegmentIndex.read(indexFile(month), file);
+        if (index == null) {
+            readSegment(month, records);
+            return;
+        }
+        List<T> segment = new ArrayList<>();
+        codec.readText(file, index.startOffset(from), index.endOffset(to), segment, NO_DELETIONS);
+        records.addAll(applyLog(month, segment));
+    }
+
+    // Replay a month's log over its segment records: new ids are added, known ids replaced
+    // in place and tombstoned ids removed, in the order they were written
+    private List<T> applyLog(YearMonth month, List<T> segment) throws IOException {
+        File log = logFile(month);
+        if (!log.exists()) {
+            return segment;
+        }
+
+        List<T> entries = new ArrayList<>();
+        List<Long> deletedIds = new ArrayList<>();
+        // Number of log entries read before each tombstone
+        List<Integer> deletedAfter = new ArrayList<>();
+        codec.readText(log, 0, Long.MAX_VALUE, entries, id -> {
+            deletedIds.add(id);
+            deletedAfter.add(entries.size());
+        });
+
+        Map<Long, T> byId = new LinkedHashMap<>();
+        List<T> withoutIds = new ArrayList<>();
+        for (T record : segment) {
+            index(record, byId, withoutIds);
+        }
+        int tombstone = 0;
+        for (int i = 0; i <= entries.size(); i++) {
+            while (tombstone < deletedIds.size() && deletedAfter.get(tombstone) == i) {
+                byId.remove(deletedIds.get(tombstone));
+                tombstone++;
+            }
+            if (i < entries.size()) {
+                index(entries.get(i), byId, withoutIds);
+            }
+        }
+
+        withoutIds.addAll(byId.values());
+        return withoutIds;
+    }
+
+    // Records from before ids were introduced can't be replaced or deleted, so they are kept aside
+    private void index(T record, Map<Long, T> byId, List<T> withoutIds) {
+        long id = codec.idOf(record);
+        if (id == 0) {
+            withoutIds.add(record);
+        } else {
+            byId.put(id, record);
+        }
+    }
+
+    // Atomically replace one segment's base file, sorted by date, and drop its log
+    private void writeSegment(YearMonth month, List<T> records) throws IOException {
+        File file = segmentFile(month);
+        File temp = new File(file.getPath() + ".tmp");
+        List<T> sorted = new ArrayList<>(records);
+        sorted.sort(Comparator.comparing(codec::dateOf));
+        for (T record : sorted) {
+            assignId(record);
+        }
+        reserveIds();
+
+        boolean binary = file.exists() ? BinaryRecordFormat.isBinary(file) : binaryByDefault;
+        SegmentIndex.Builder index = new SegmentIndex.Builder();
+        if (binary) {
+            codec.writeBinary(temp, sorted);
+        } else {
+            byte[] separator = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+            long offset = 0;
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+                for (T record : sorted) {
+                    index.addLine(codec.dateOf(record), offset);
+                    byte[] line = entry(codec.idOf(record), codec.toLine(record)).getBytes(StandardCharsets.UTF_8);
+                    out.write(line);
+                    out.write(separator);
+                    offset += line.length + separator.length;
+                }
+            }
+        }
+        replaceAtomically(temp, file);
+        // Binary segments are read whole, so they carry no index
+        if (binary) {
+            deleteFile(indexFile(month));
+        } else {
+            index.write(indexFile(month), file);
+        }
+        // The base file now holds everything, so the log is obsolete
+        clearLog(month);
+    }
+
+    // Append lines to a segment's log with a single write and fsync
+    private void appendToLog(YearMonth month, List<String> lines) throws IOException {
+        File log = logFile(month);
+        // Drop a line torn by an earlier crash so it can't swallow the first new entry
+        truncatePartialLine(log);
+
+        StringBuilder batch = new StringBuilder();
+        for (String line : lines) {
+            batch.append(line).append(System.lineSeparator());
+        }
+        boolean created = !log.exists();
+        try (FileOutputStream out = new FileOutputStream(log, true)) {
+            out.write(batch.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        if (created) {
+            // A new log is only reachable once its directory entry is on disk too
+            forceDirectory(log);
+        }
+        logEntryCounts.merge(month, lines.size(), Integer::sum);
+    }
+
+    // Give the record the next id if it has none. This never touches the disk, so a record always
+    // has its id once queued; reserveIds records it before anything carrying it is written.
+    private void assignId(T record) {
+        if (codec.idOf(record) == 0) {
+            codec.setId(record, nextId++);
+        }
+    }
+
+    // Reserve a block past every id handed out so far, if they aren't all reserved on disk yet,
+    // so no id written to a file is ever handed out again after a restart
+    private void reserveIds() throws IOException {
+        if (nextId > reservedId) {
+            long reserved = nextId + ID_BLOCK;
+            File temp = new File(idFile.getPath() + ".tmp");
+            Files.write(temp.toPath(), List.of(Long.toString(reserved)));
+            replaceAtomically(temp, idFile);
+            reservedId = reserved;
+        }
+    }
+
+    // First unreserved id recorded on disk, or 0 if the store has no usable id file
+    private long readReservedId() throws IOException {
+        if (!idFile.exists()) {
+            return 0;
+        }
+        List<String> lines = Files.readAllLines(idFile.toPath());
+        try {
+            return lines.isEmpty() ? 0 : Long.parseLong(lines.get(0).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Give an id to every record stored before ids existed, one month at a time. The ids
+    // start after the highest one found, in case the id file itself was lost.
+    private void assignMissingIds() throws IOException {
+        long highest = 0;
+        List<YearMonth> needIds = new ArrayList<>();
+        for (YearMonth month : allMonths()) {
+            List<T> records = new ArrayList<>();
+            readSegment(month, records);
+            boolean missing = false;
+            for (T record : records) {
+                highest = Math.max(highest, codec.idOf(record));
+                missing |= codec.idOf(record) == 0;
+            }
+            if (missing) {
+                needIds.add(month);
+            }
+        }
+
+        nextId = highest + 1;
+        reservedId = nextId;
+        for (YearMonth month : needIds) {
+            List<T> records = new ArrayList<>();
+            readSegment(month, records);
+            writeSegment(month, records);
+        }
+    }
+
+    private void clearLog(YearMonth month) throws IOException {
+        deleteFile(logFile(month));
+        logEntryCounts.remove(month);
+    }
+
+    private File segmentFile(YearMonth month) {
+        return new File(directory, month + SEGMENT_SUFFIX);
+    }
+
+    private File logFile(YearMonth month) {
+        return new File(directory, month + LOG_SUFFIX);
+    }
+
+    private File indexFile(YearMonth month) {
+        return new File(directory, month + INDEX_SUFFIX);
+    }
+
+    // Months that have a segment, a log, or both
+    private List<YearMonth> allMonths() {
+        List<YearMonth> months = segmentMonths();
+        for (YearMonth month : logMonths()) {
+            if (!months.contains(month)) {
+                months.add(month);
+            }
+        }
+        months.sort(null);
+        return months;
+    }
+
+    private List<YearMonth> segmentMonths() {
+        return monthsWithSuffix(SEGMENT_SUFFIX);
+    }
+
+    private List<YearMonth> logMonths() {
+        return monthsWithSuffix(LOG_SUFFIX);
+    }
+
+    private List<YearMonth> monthsWithSuffix(String suffix) {
+        List<YearMonth> months = new ArrayList<>();
+        String[] names = directory.list();
+        if (names == null) {
+            return months;
+        }
+        for (String name : names) {
+            if (name.endsWith(suffix)) {
+                months.add(YearMonth.parse(name.substring(0, name.length() - suffix.length())));
+            }
+        }
+        months.sort(null);
+        return months;
+    }
+
+    private static void deleteFile(File file) throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not remove " + file);
+        }
+    }
+
+    // Cut a file back to its last complete line
+    private static void truncatePartialLine(File file) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+        try (RandomAccessFile log = new RandomAccessFile(file, "rw")) {
+            long end = log.length();
+            while (end > 0) {
+                log.seek(end - 1);
+                if (log.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end < log.length()) {
+                log.setLength(end);
+            }
+        }
+    }
+
+    // Flush a fully written temp file to disk and rename it over the live file,
+    // so a crash leaves either the old or the new contents but never a partial file
+    static void replaceAtomically(File temp, File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(file);
+    }
+
+    // Flush the directory holding a file so a rename or creation in it survives a crash. Some
+    // platforms, Windows among them, can't open a directory; there the file system is trusted.
+    private static void forceDirectory(File file) {
+        File directory = file.getAbsoluteFile().getParentFile();
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories can't be forced here
+        }
+    }
+
+    private static boolean isBinary(File file) {
+        try {
+            return BinaryRecordFormat.isBinary(file);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Count the entries of an existing log left over from a previous session
+    private static int countLines(File file) {
+        int count = 0;
+        try {
+            for (String line : Files.readAllLines(file.toPath())) {
+                if (!line.trim().isEmpty()) {
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+// Runs a set of accumulators over a list of records in one fused pass. Large lists are split
+// across a ForkJoinPool: each part fills its own empty copies of the accumulators, and the
+// partial results are merged pairwise on the way back up.
+public class SummaryEngine<T> {
+    // Parts at most this long are accumulated sequentially
+    private static final int SPLIT_THRESHOLD = 8192;
+
+    private final List<Accumulator<T>> prototypes;
+    private final ForkJoinPool pool;
+
+    public SummaryEngine(List<Accumulator<T>> accumulators) {
+        this(accumulators, ForkJoinPool.commonPool());
+    }
+
+    public SummaryEngine(List<Accumulator<T>> accumulators, ForkJoinPool pool) {
+        this.prototypes = new ArrayList<>(accumulators);
+        this.pool = pool;
+    }
+
+    // Fill a single accumulator from the records that match the filter
+    @SuppressWarnings("unchecked")
+    public static <T, A extends Accumulator<T>> A summarize(List<T> records, Predicate<? super T> filter, A accumulator) {
+        return (A) new SummaryEngine<>(List.<Accumulator<T>>of(accumulator)).run(records, filter).get(0);
+    }
+
+    // Feed every record to filled copies of the accumulators, returned in the order given
+    public List<Accumulator<T>> run(List<T> records) {
+        return run(records, record -> true);
+    }
+
+    // Feed every record that matches the filter to filled copies of the accumulators
+    public List<Accumulator<T>> run(List<T> records, Predicate<? super T> filter) {
+        Part part = new Part(records, filter, 0, records.size());
+        if (records.size() <= SPLIT_THRESHOLD) {
+            return part.compute();
+        }
+        return pool.invoke(part);
+    }
+
+    private List<Accumulator<T>> emptyCopies() {
+        List<Accumulator<T>> copies = new ArrayList<>(prototypes.size());
+        for (Accumulator<T> prototype : prototypes) {
+            copies.add(prototype.emptyCopy());
+        }
+        return copies;
+    }
+
+    // Accumulates records [from, to) of the list
+    private class Part extends RecursiveTask<List<Accumulator<T>>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> records;
+        private final Predicate<? super T> filter;
+        private final int from;
+        private final int to;
+
+        Part(List<T> records, Predicate<? super T> filter, int from, int to) {
+            this.records = records;
+            this.filter = filter;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Accumulator<T>> compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                List<Accumulator<T>> accumulators = emptyCopies();
+                for (int i = from; i < to; i++) {
+                    T record = records.get(i);
+                    if (filter.test(record)) {
+                        for (Accumulator<T> accumulator : accumulators) {
+                            accumulator.add(record);
+                        }
+                    }
+                }
+                return accumulators;
+            }
+
+            int middle = (from + to) >>> 1;
+            Part left = new Part(records, filter, from, middle);
+            left.fork();
+            List<Accumulator<T>> right = new Part(records, filter, middle, to).compute();
+            List<Accumulator<T>> merged = left.join();
+            for (int i = 0; i < merged.size(); i++) {
+                merged.get(i).merge(right.get(i));
+            }
+            return merged;
+        }
+    }
+}
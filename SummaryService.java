@@ -1,98 +1,131 @@
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
-import java.util.DoubleSummaryStatistics;
-import java.util.IntSummaryStatistics;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public class SummaryService {
     
-    // Generate a weekly summary from a list of health records
-    public String generateWeeklySummary(List<HealthRecord> records) {
-        // Filter records from the last 7 days
+    // Generate a weekly summary for a user by merging the daily rollups of the week
+    public String generateWeeklySummary(UserProfile profile) {
         LocalDate today = LocalDate.now();
         LocalDate weekAgo = today.minusDays(7);
         
-        List<HealthRecord> weeklyRecords = records.stream()
-                .filter(record -> !record.getDate().isBefore(weekAgo) && !record.getDate().isAfter(today))
-                .collect(Collectors.toList());
-        
-        if (weeklyRecords.isEmpty()) {
-            return "No records found for the past week.";
-        }
-        
-        return generateSummary(weeklyRecords, "Weekly", weekAgo, today);
+        return generateSummary(profile.getRollup(weekAgo, today), profile.getGoalTimeline(), "Weekly",
+                weekAgo, today, "No records found for the past week.");
     }
     
-    // Generate a monthly summary from a list of health records
-    public String generateMonthlySummary(List<HealthRecord> records) {
-        // Filter records from the last 30 days
+    // Generate a monthly summary for a user by merging the daily rollups of the period
+    public String generateMonthlySummary(UserProfile profile) {
         LocalDate today = LocalDate.now();
         LocalDate monthAgo = today.minusDays(30);
         
-        List<HealthRecord> monthlyRecords = records.stream()
-                .filter(record -> !record.getDate().isBefore(monthAgo) && !record.getDate().isAfter(today))
-                .collect(Collectors.toList());
-        
-        if (monthlyRecords.isEmpty()) {
-            return "No records found for the past month.";
+        return generateSummary(profile.getRollup(monthAgo, today), profile.getGoalTimeline(), "Monthly",
+                monthAgo, today, "No records found for the past month.");
+    }
+    
+    // Generate a summary for a user over any date range
+    public String generateSummary(UserProfile profile, LocalDate from, LocalDate to) {
+        return ReportWriter.toText(out -> writeSummary(profile, from, to, out));
+    }
+    
+    // Generate one summary per day, week, month or year of a date range, skipping periods without records
+    public String generateSummary(UserProfile profile, LocalDate from, LocalDate to, Granularity granularity) {
+        return ReportWriter.toText(out -> writeSummary(profile, from, to, granularity, out));
+    }
+    
+    // Write a summary for a user over any date range, e.g. to export it as CSV or JSON
+    public void writeSummary(UserProfile profile, LocalDate from, LocalDate to, ReportWriter out) throws IOException {
+        writeSummary(profile.getRollup(from, to), profile.getGoalTimeline(), "Period", from, to,
+                "No records found between " + from + " and " + to + ".", out);
+    }
+    
+    // Write one summary per day, week, month or year of a date range, skipping periods without records
+    public void writeSummary(UserProfile profile, LocalDate from, LocalDate to, Granularity granularity,
+                             ReportWriter out) throws IOException {
+        GoalTimeline goals = profile.getGoalTimeline();
+        boolean any = false;
+        for (Map.Entry<LocalDate, Rollup> period : profile.getRollups(from, to, granularity).entrySet()) {
+            if (period.getValue().getCount() == 0) {
+                continue;
+            }
+            LocalDate start = period.getKey().isBefore(from) ? from : period.getKey();
+            LocalDate end = granularity.nextPeriod(period.getKey()).minusDays(1);
+            if (end.isAfter(to)) {
+                end = to;
+            }
+            writeSummary(period.getValue(), goals, granularity.getLabel(), start, end, "", out);
+            any = true;
+        }
+        if (!any) {
+            out.note("No records found between " + from + " and " + to + ".");
         }
-        
-        return generateSummary(monthlyRecords, "Monthly", monthAgo, today);
     }
     
-    // Helper method to generate summary statistics
-    private String generateSummary(List<HealthRecord> records, String period, LocalDate startDate, LocalDate endDate) {
-        DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
-        
-        // Calculate statistics
-        DoubleSummaryStatistics weightStats = records.stream()
-                .collect(Collectors.summarizingDouble(HealthRecord::getWeight));
-        
-        IntSummaryStatistics sleepStats = records.stream()
-                .collect(Collectors.summarizingInt(HealthRecord::getSleepHours));
-        
-        DoubleSummaryStatistics waterStats = records.stream()
-                .collect(Collectors.summarizingDouble(HealthRecord::getWaterIntake));
-        
-        // Count exercise frequency
-        Map<String, Long> exerciseCounts = records.stream()
-                .flatMap(record -> record.getExercises().stream())
-                .collect(Collectors.groupingBy(exercise -> exercise, Collectors.counting()));
-        
-        // Format the summary
-        StringBuilder summary = new StringBuilder();
-        summary.append(String.format("%s Summary (%s to %s)\n", 
-                period, startDate.format(formatter), endDate.format(formatter)));
-        summary.append("=================================\n");
-        summary.append(String.format("Number of Records: %d\n\n", records.size()));
-        
-        summary.append("Weight (kg):\n");
-        summary.append(String.format("  Average: %.2f\n", weightStats.getAverage()));
-        summary.append(String.format("  Min: %.2f\n", weightStats.getMin()));
-        summary.append(String.format("  Max: %.2f\n\n", weightStats.getMax()));
-        
-        summary.append("Sleep (hours):\n");
-        summary.append(String.format("  Average: %.2f\n", sleepStats.getAverage()));
-        summary.append(String.format("  Min: %d\n", sleepStats.getMin()));
-        summary.append(String.format("  Max: %d\n\n", sleepStats.getMax()));
+    // Format the statistics of a rollup
+    private String generateSummary(Rollup rollup, GoalTimeline goals, String period, LocalDate startDate,
+                                   LocalDate endDate, String emptyMessage) {
+        return ReportWriter.toText(out -> writeSummary(rollup, goals, period, startDate, endDate, emptyMessage, out));
+    }
+    
+    // Write the statistics of a rollup, and how many of its days met the goal active on them if
+    // there is a goal timeline
+    private void writeSummary(Rollup rollup, GoalTimeline goals, String period, LocalDate startDate,
+                              LocalDate endDate, String emptyMessage, ReportWriter out) throws IOException {
+        if (rollup.getCount() == 0) {
+            out.note(emptyMessage);
+            return;
+        }
         
-        summary.append("Water Intake (liters):\n");
-        summary.append(String.format("  Average: %.2f\n", waterStats.getAverage()));
-        summary.append(String.format("  Min: %.2f\n", waterStats.getMin()));
-        summary.append(String.format("  Max: %.2f\n\n", waterStats.getMax()));
+        DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
+        out.beginReport(period + " Summary (" + startDate.format(formatter) + " to " + endDate.format(formatter) + ")");
+        out.value("Number of Records", rollup.getCount(), "");
+        if (goals != null) {
+            int daysTracked = goals.getDaysTracked(startDate, endDate);
+            if (daysTracked > 0) {
+                int daysMet = goals.getDaysMet(startDate, endDate);
+                out.share("Targets Achieved", daysMet, 0, " days", daysMet * 100.0 / daysTracked,
+                        "of " + daysTracked + " tracked");
+            }
+        }
         
-        summary.append("Exercise Frequency:\n");
+        out.beginSection("Weight (kg)");
+        out.value("Average", rollup.getAverageWeight(), 2, "");
+        out.value("Median", rollup.getMedianWeight(), 2, "");
+        out.value("90th percentile", rollup.getQuantiles(Rollup.Metric.WEIGHT).getQuantile(0.9), 2, "");
+        out.value("Min", rollup.getMinWeight(), 2, "");
+        out.value("Max", rollup.getMaxWeight(), 2, "");
+        out.endSection();
+        
+        out.beginSection("Sleep (hours)");
+        out.value("Average", rollup.getAverageSleepHours(), 2, "");
+        out.value("Median", rollup.getMedianSleepHours(), 0, "");
+        out.value("90th percentile", rollup.getQuantiles(Rollup.Metric.SLEEP_HOURS).getQuantile(0.9), 0, "");
+        out.value("Min", rollup.getMinSleepHours(), "");
+        out.value("Max", rollup.getMaxSleepHours(), "");
+        out.endSection();
+        
+        out.beginSection("Water Intake (liters)");
+        out.value("Average", rollup.getAverageWaterIntake(), 2, "");
+        out.value("Median", rollup.getMedianWaterIntake(), 2, "");
+        out.value("90th percentile", rollup.getQuantiles(Rollup.Metric.WATER_INTAKE).getQuantile(0.9), 2, "");
+        out.value("Min", rollup.getMinWaterIntake(), 2, "");
+        out.value("Max", rollup.getMaxWaterIntake(), 2, "");
+        out.endSection();
+        
+        out.beginSection("Exercise Frequency");
+        Map<String, Long> exerciseCounts = rollup.getExerciseCounts();
         if (exerciseCounts.isEmpty()) {
-            summary.append("  No exercises recorded\n");
+            out.note("No exercises recorded");
         } else {
-            exerciseCounts.entrySet().stream()
-                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                    .forEach(entry -> summary.append(String.format("  %s: %d times\n", entry.getKey(), entry.getValue())));
+            List<Map.Entry<String, Long>> byCount = new ArrayList<>(exerciseCounts.entrySet());
+            byCount.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+            for (Map.Entry<String, Long> entry : byCount) {
+                out.value(entry.getKey(), entry.getValue(), " times");
+            }
         }
-        
-        return summary.toString();
+        out.endSection();
     }
 }
\ No newline at end of file
@@ -0,0 +1,120 @@
+import java.io.IOException;
+
+// Renders reports as the plain text shown in the console:
+//
+//   Title
+//   =====
+//
+//   Label: value unit
+//
+//   Section:
+//     Label: value unit
+//     • note
+//
+// Blank lines separate sections from each other and from the values around them.
+public class TextReportWriter extends ReportWriter {
+    private boolean inSection;
+    // Whether the last thing written was the title, a section, or a top-level line
+    private boolean afterTitle = true;
+    private boolean afterSection;
+    private boolean afterNote;
+    private boolean anyReport;
+
+    public TextReportWriter(Appendable out) {
+        super(out);
+    }
+
+    @Override
+    public void beginReport(String title) throws IOException {
+        if (anyReport) {
+            out.append('\n');
+        }
+        anyReport = true;
+        out.append(title).append('\n');
+        for (int i = 0; i < title.length(); i++) {
+            out.append('=');
+        }
+        out.append("\n\n");
+        afterTitle = true;
+        afterSection = false;
+        afterNote = false;
+    }
+
+    @Override
+    public void beginSection(String title) throws IOException {
+        if (!afterTitle) {
+            out.append('\n');
+        }
+        out.append(title).append(":\n");
+        inSection = true;
+    }
+
+    @Override
+    public void endSection() throws IOException {
+        inSection = false;
+        afterTitle = false;
+        afterSection = true;
+        afterNote = false;
+    }
+
+    @Override
+    public void value(String label, CharSequence text) throws IOException {
+        startLine(false);
+        out.append(label).append(": ").append(text).append('\n');
+    }
+
+    @Override
+    public void value(String label, long number, String unit) throws IOException {
+        startLine(false);
+        out.append(label).append(": ");
+        appendLong(out, number);
+        out.append(unit).append('\n');
+    }
+
+    @Override
+    public void value(String label, double number, int decimals, String unit) throws IOException {
+        startLine(false);
+        out.append(label).append(": ");
+        appendFixed(out, number, decimals);
+        out.append(unit).append('\n');
+    }
+
+    @Override
+    public void share(String label, double number, int decimals, String unit, double percent, String of)
+            throws IOException {
+        startLine(false);
+        out.append(label).append(": ");
+        appendFixed(out, number, decimals);
+        out.append(unit).append(" (");
+        appendFixed(out, percent, 1);
+        out.append('%');
+        if (!of.isEmpty()) {
+            out.append(' ').append(of);
+        }
+        out.append(")\n");
+    }
+
+    @Override
+    public void note(String text) throws IOException {
+        startLine(true);
+        if (inSection) {
+            out.append("• ");
+        }
+        out.append(text).append('\n');
+    }
+
+    // Indent lines in a section; set top-level lines off from a preceding section, and
+    // top-level notes from the values before them
+    private void startLine(boolean note) throws IOException {
+        if (inSection) {
+            out.append("  ");
+            return;
+        }
+        if (afterSection || (note && !afterTitle && !afterNote)) {
+            out.append('\n');
+        }
+        afterTitle = false;
+        afterSection = false;
+        afterNote = note;
+    }
+}
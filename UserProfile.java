@@ -1,22 +1,59 @@
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class UserProfile {
+    // Shared pool for loading data files in the background
+    private static final ExecutorService LOADER = Executors.newFixedThreadPool(3, runnable -> {
+        Thread thread = new Thread(runnable, "profile-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private String name;
-    private Goal goal;
-    private List<HealthRecord> records;
-    private List<MoodRecord> moodRecords;
+    // Goals and records, which the main menu needs first, start loading in the background at
+    // startup and are only waited for on first access. Records are kept by id, in the order
+    // they were loaded or added.
+    private CompletableFuture<GoalHistory> goals;
+    private CompletableFuture<Map<Long, HealthRecord>> records;
+    // The rest start loading on first access; null until then.
+    // Mood records are kept as columns of primitives rather than objects
+    private CompletableFuture<MoodColumns> moodRecords;
+    // Per-day totals of the health records
+    private CompletableFuture<DailyRollups> rollups;
+    // Running totals for the mood analysis
+    private CompletableFuture<MoodStats> moodStats;
+    // Words in mood notes, loaded from disk or built from the mood records
+    private CompletableFuture<NoteIndex> noteIndex;
+    // Which days met the goal; built on first use and dropped when the goal changes
+    private GoalTimeline goalTimeline;
 
     private FileStorageService storageService;
+    // Bumped by every change to the profile's data, so cached reports can tell they're current
+    private volatile long dataVersion;
 
     // Constructor
     public UserProfile(String name) {
         this.name = name;
-        this.records = new ArrayList<>();
-        this.moodRecords = new ArrayList<>();
 
-        this.storageService = new FileStorageService();
+        this.storageService = new FileStorageService(name);
         loadData();
     }
 
@@ -29,94 +66,433 @@ public class UserProfile {
         this.name = name;
     }
 
+    // The most recently set goal, or null if none was set
     public Goal getGoal() {
-        return goal;
+        return await(goals).getCurrent();
     }
 
+    // Set a new goal from its creation date on; earlier goals still apply to the days before it
     public void setGoal(Goal goal) {
-        this.goal = goal;
-        saveGoal();
+        await(goals).add(goal);
+        goalTimeline = null;
+        saveGoal(goal);
+        dataVersion++;
+    }
+
+    // Every goal set so far, and which one applied on each day
+    public GoalHistory getGoalHistory() {
+        return await(goals);
+    }
+
+    // Changes whenever the goal, a health record or a mood record changes
+    public long getDataVersion() {
+        return dataVersion;
+    }
+
+    // Per-day attainment of the goal active on each day and streaks over every health record,
+    // or null if no goal is set
+    public GoalTimeline getGoalTimeline() {
+        if (getGoalHistory().isEmpty()) {
+            return null;
+        }
+        if (goalTimeline == null) {
+            goalTimeline = new GoalTimeline(getGoalHistory(), await(records).values());
+        }
+        return goalTimeline;
     }
 
     public List<HealthRecord> getRecords() {
-        return records;
+        return new ArrayList<>(await(records).values());
     }
 
-    // Add a new health record
-    public void addRecord(HealthRecord record) {
-        records.add(record);
-        saveRecords();
+    // Get a health record by id, or null if there is none
+    public HealthRecord getRecord(long id) {
+        return await(records).get(id);
     }
 
-    // Delete a health record by index
-    public boolean deleteRecord(int index) {
-        if (index >= 0 && index < records.size()) {
-            records.remove(index);
-            saveRecords();
-            return true;
+    // Stream the health records dated within [from, to] from disk in date order, without
+    // holding more than one stored month in memory
+    public Stream<HealthRecord> streamRecords(LocalDate from, LocalDate to) {
+        try {
+            return storageService.streamRecords(from, to);
+        } catch (IOException e) {
+            System.err.println("Error loading records: " + e.getMessage());
+            return getRecords().stream()
+                    .filter(record -> !record.getDate().isBefore(from) && !record.getDate().isAfter(to))
+                    .sorted(Comparator.comparing(HealthRecord::getDate));
+        }
+    }
+
+    // Totals of the health records dated within [from, to], from the per-day rollups
+    public Rollup getRollup(LocalDate from, LocalDate to) {
+        try {
+            return await(rollups()).between(from, to);
+        } catch (IOException e) {
+            System.err.println("Error loading records: " + e.getMessage());
+            Rollup rollup = new Rollup();
+            streamRecords(from, to).forEach(rollup::add);
+            return rollup;
+        }
+    }
+
+    // Days within [from, to] on which every one of the exercises was done, in order
+    public List<LocalDate> getExerciseDays(Collection<String> exercises, LocalDate from, LocalDate to) {
+        try {
+            return await(rollups()).exerciseDays(exercises, from, to);
+        } catch (IOException e) {
+            System.err.println("Error loading records: " + e.getMessage());
+            return streamRecords(from, to)
+                    .filter(record -> record.getExercises().containsAll(exercises))
+                    .map(HealthRecord::getDate)
+                    .distinct()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // Up to limit exercises done on the most days within [from, to], with their number of days
+    public Map<String, Integer> getTopExercises(LocalDate from, LocalDate to, int limit) {
+        try {
+            return await(rollups()).topExercises(from, to, limit);
+        } catch (IOException e) {
+            System.err.println("Error loading records: " + e.getMessage());
+            Map<String, Set<LocalDate>> days = new HashMap<>();
+            streamRecords(from, to).forEach(record -> {
+                for (String exercise : record.getExercises()) {
+                    days.computeIfAbsent(exercise, name -> new HashSet<>()).add(record.getDate());
+                }
+            });
+            Map<String, Integer> top = new LinkedHashMap<>();
+            days.entrySet().stream()
+                    .sorted((a, b) -> Integer.compare(b.getValue().size(), a.getValue().size()))
+                    .limit(limit)
+                    .forEach(entry -> top.put(entry.getKey(), entry.getValue().size()));
+            return top;
+        }
+    }
+
+    // Totals of the health records in each day, week, month or year overlapping [from, to],
+    // keyed by the first day of the period
+    public SortedMap<LocalDate, Rollup> getRollups(LocalDate from, LocalDate to, Granularity granularity) {
+        try {
+            return await(rollups()).byPeriod(from, to, granularity);
+        } catch (IOException e) {
+            System.err.println("Error loading records: " + e.getMessage());
+            SortedMap<LocalDate, Rollup> periods = new TreeMap<>();
+            streamRecords(from, to).forEach(record ->
+                    periods.computeIfAbsent(granularity.periodStart(record.getDate()), start -> new Rollup()).add(record));
+            return periods;
         }
-        return false;
+    }
+
+    // Stream every health record from disk in date order
+    public Stream<HealthRecord> streamRecords() {
+        return streamRecords(LocalDate.MIN, LocalDate.MAX);
+    }
+
+    // Add a new health record; returns false if it could not be saved to disk yet
+    public boolean addRecord(HealthRecord record) {
+        // Storage gives the record its id
+        boolean saved = appendRecord(record);
+        // Totals not built yet will be built from the records, this one included
+        DailyRollups dailyRollups = ifStarted(rollups);
+        await(records).put(record.getId(), record);
+        if (dailyRollups != null) {
+            dailyRollups.add(record);
+        }
+        if (goalTimeline != null) {
+            goalTimeline.add(record);
+        }
+        dataVersion++;
+        return saved;
+    }
+
+    // Replace the health record with the given id
+    public boolean updateRecord(long id, HealthRecord record) {
+        HealthRecord previous = await(records).get(id);
+        if (previous == null) {
+            return false;
+        }
+        try {
+            storageService.updateRecord(previous, record);
+        } catch (IOException e) {
+            // The replacement stays queued and is written with the next commit
+            System.err.println("Error saving records: " + e.getMessage());
+        }
+        DailyRollups dailyRollups = ifStarted(rollups);
+        await(records).put(id, record);
+        if (dailyRollups != null) {
+            dailyRollups.remove(previous);
+            dailyRollups.add(record);
+        }
+        if (goalTimeline != null) {
+            goalTimeline.remove(previous);
+            goalTimeline.add(record);
+        }
+        dataVersion++;
+        return true;
+    }
+
+    // Delete the health record with the given id
+    public boolean deleteRecord(long id) {
+        DailyRollups dailyRollups = ifStarted(rollups);
+        HealthRecord record = await(records).remove(id);
+        if (record == null) {
+            return false;
+        }
+        try {
+            storageService.deleteRecord(record);
+        } catch (IOException e) {
+            // The tombstone stays queued and is written with the next commit
+            System.err.println("Error saving records: " + e.getMessage());
+        }
+        if (dailyRollups != null) {
+            dailyRollups.remove(record);
+        }
+        if (goalTimeline != null) {
+            goalTimeline.remove(record);
+        }
+        dataVersion++;
+        return true;
     }
 
     // Get mood records
     public List<MoodRecord> getMoodRecords() {
-        return moodRecords;
+        return await(moodRecords()).toRecords();
     }
-    
-    // Add a new mood record
-    public void addMoodRecord(MoodRecord record) {
-        moodRecords.add(record);
-        saveMoodRecords();
-    }
-    
-    // Delete a mood record by index
-    public boolean deleteMoodRecord(int index) {
-        if (index >= 0 && index < moodRecords.size()) {
-            moodRecords.remove(index);
-            saveMoodRecords();
-            return true;
+
+    // Running mood totals, kept up to date as mood records change
+    public MoodStats getMoodStats() {
+        return await(moodStats());
+    }
+
+    // Mood records whose notes match a query of words and "quoted phrases" joined by AND and OR,
+    // in date order
+    public List<MoodRecord> searchMoodNotes(String query) {
+        List<MoodRecord> matches = new ArrayList<>();
+        for (long id : await(noteIndex()).search(query)) {
+            matches.add(await(moodRecords()).get(id));
+        }
+        return matches;
+    }
+
+    // Get a mood record by id, or null if there is none
+    public MoodRecord getMoodRecord(long id) {
+        return await(moodRecords()).get(id);
+    }
+
+    // Stream the mood records dated within [from, to] from disk in date order, without
+    // holding more than one stored month in memory
+    public Stream<MoodRecord> streamMoodRecords(LocalDate from, LocalDate to) {
+        try {
+            return storageService.streamMoodRecords(from, to);
+        } catch (IOException e) {
+            System.err.println("Error loading mood records: " + e.getMessage());
+            return getMoodRecords().stream()
+                    .filter(record -> !record.getDate().isBefore(from) && !record.getDate().isAfter(to))
+                    .sorted(Comparator.comparing(MoodRecord::getDate));
+        }
+    }
+
+    // Stream every mood record from disk in date order
+    public Stream<MoodRecord> streamMoodRecords() {
+        return streamMoodRecords(LocalDate.MIN, LocalDate.MAX);
+    }
+
+    // Add a new mood record; returns false if it could not be saved to disk yet
+    public boolean addMoodRecord(MoodRecord record) {
+        // Storage gives the record its id
+        boolean saved = appendMoodRecord(record);
+        // Totals and indexes not built yet will be built from the columns, this record included
+        MoodColumns columns = await(moodRecords());
+        MoodStats stats = ifStarted(moodStats);
+        NoteIndex index = ifStarted(noteIndex);
+        columns.put(record);
+        if (stats != null) {
+            stats.add(record);
+        }
+        if (index != null) {
+            index.add(record);
+        }
+        dataVersion++;
+        return saved;
+    }
+
+    // Replace the mood record with the given id
+    public boolean updateMoodRecord(long id, MoodRecord record) {
+        MoodColumns columns = await(moodRecords());
+        MoodStats stats = ifStarted(moodStats);
+        NoteIndex index = ifStarted(noteIndex);
+        MoodRecord previous = columns.get(id);
+        if (previous == null) {
+            return false;
+        }
+        try {
+            storageService.updateMoodRecord(previous, record);
+        } catch (IOException e) {
+            // The replacement stays queued and is written with the next commit
+            System.err.println("Error saving mood records: " + e.getMessage());
+        }
+        columns.put(record);
+        if (stats != null) {
+            stats.remove(previous);
+            stats.add(record);
+        }
+        if (index != null) {
+            index.remove(previous);
+            index.add(record);
+        }
+        dataVersion++;
+        return true;
+    }
+
+    // Delete the mood record with the given id
+    public boolean deleteMoodRecord(long id) {
+        MoodColumns columns = await(moodRecords());
+        MoodStats stats = ifStarted(moodStats);
+        NoteIndex index = ifStarted(noteIndex);
+        MoodRecord record = columns.remove(id);
+        if (record == null) {
+            return false;
+        }
+        try {
+            storageService.deleteMoodRecord(record);
+        } catch (IOException e) {
+            // The tombstone stays queued and is written with the next commit
+            System.err.println("Error saving mood records: " + e.getMessage());
+        }
+        if (stats != null) {
+            stats.remove(record);
         }
-        return false;
+        if (index != null) {
+            index.remove(record);
+        }
+        dataVersion++;
+        return true;
     }
-    
-    // Load records and goal from files
+
+    // Write any pending changes to disk before the application exits
+    public void close() {
+        try {
+            storageService.flush();
+            // An index that was never loaded hasn't changed
+            if (noteIndex != null) {
+                storageService.saveNoteIndex(await(noteIndex), await(moodRecords));
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving data: " + e.getMessage());
+        }
+    }
+
+    // Start loading records and goals from files in parallel
     private void loadData() {
+        this.records = CompletableFuture.supplyAsync(
+                () -> byId(load(storageService::loadRecords, new ArrayList<>()), HealthRecord::getId), LOADER);
+        this.goals = CompletableFuture.supplyAsync(
+                () -> load(storageService::loadGoalHistory, new GoalHistory()), LOADER);
+    }
+
+    private synchronized CompletableFuture<DailyRollups> rollups() {
+        if (rollups == null) {
+            rollups = records.thenApply(loaded -> new DailyRollups(loaded.values(),
+                    date -> storageService.loadRecords(date, date)));
+        }
+        return rollups;
+    }
+
+    private synchronized CompletableFuture<MoodColumns> moodRecords() {
+        if (moodRecords == null) {
+            // Filled a stored month at a time, so the records are never all held as objects
+            moodRecords = CompletableFuture.supplyAsync(() -> load(() -> {
+                MoodColumns columns = new MoodColumns();
+                storageService.loadMoodRecords(columns::put);
+                return columns;
+            }, new MoodColumns()), LOADER);
+        }
+        return moodRecords;
+    }
+
+    private synchronized CompletableFuture<MoodStats> moodStats() {
+        if (moodStats == null) {
+            moodStats = moodRecords().thenApply(loaded -> new MoodStats(() -> loaded));
+        }
+        return moodStats;
+    }
+
+    private synchronized CompletableFuture<NoteIndex> noteIndex() {
+        if (noteIndex == null) {
+            noteIndex = moodRecords().thenApplyAsync(storageService::loadNoteIndex, LOADER);
+        }
+        return noteIndex;
+    }
+
+    // What a lazily loaded future holds, waiting for it if needed, or null if it was never started
+    private static <T> T ifStarted(CompletableFuture<T> future) {
+        return future == null ? null : await(future);
+    }
+
+    private static <T> Map<Long, T> byId(List<T> records, ToLongFunction<T> idOf) {
+        Map<Long, T> byId = new LinkedHashMap<>();
+        for (T record : records) {
+            byId.put(idOf.applyAsLong(record), record);
+        }
+        return byId;
+    }
+
+    private static <T> T load(DataLoader<T> loader, T fallback) {
         try {
-            this.records = storageService.loadRecords();
-            this.goal = storageService.loadGoal();
-            this.moodRecords = storageService.loadMoodRecords();
+            return loader.load();
         } catch (IOException e) {
             // If files don't exist yet, that's okay
             System.out.println("No existing data found. Starting fresh.");
+            return fallback;
         }
     }
 
-    // Save records to file
-    private void saveRecords() {
+    // Wait for a background load, surfacing its failure as if it had happened here
+    private static <T> T await(CompletableFuture<T> future) {
         try {
-            storageService.saveRecords(records);
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // Append a single record to the records log; returns true once it is on disk
+    private boolean appendRecord(HealthRecord record) {
+        try {
+            storageService.appendRecord(record);
+            return true;
         } catch (IOException e) {
             System.err.println("Error saving records: " + e.getMessage());
+            return false;
         }
     }
 
     // Save goal to file
-    private void saveGoal() {
+    private void saveGoal(Goal goal) {
         try {
             storageService.saveGoal(goal);
         } catch (IOException e) {
             System.err.println("Error saving goal: " + e.getMessage());
         }
     }
-    
-    // Save mood records to file
-    private void saveMoodRecords() {
+
+    // Append a single mood record to the mood records log; returns true once it is on disk
+    private boolean appendMoodRecord(MoodRecord record) {
         try {
-            storageService.saveMoodRecords(moodRecords);
+            storageService.appendMoodRecord(record);
+            return true;
         } catch (IOException e) {
             System.err.println("Error saving mood records: " + e.getMessage());
+            return false;
         }
     }
-    
 
+    // Loads one data file; may fail with an IOException
+    private interface DataLoader<T> {
+        T load() throws IOException;
+    }
 }
\ No newline at end of file